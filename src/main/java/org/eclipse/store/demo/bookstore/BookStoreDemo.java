@@ -18,7 +18,10 @@ package org.eclipse.store.demo.bookstore;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.time.Year;
 import java.util.Locale;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
 
 import javax.money.CurrencyUnit;
 import javax.money.Monetary;
@@ -30,6 +33,8 @@ import javax.money.format.MonetaryFormats;
 import org.eclipse.serializer.persistence.binary.jdk8.types.BinaryHandlersJDK8;
 import org.eclipse.store.demo.bookstore.data.Data;
 import org.eclipse.store.demo.bookstore.data.DataMetrics;
+import org.eclipse.store.demo.bookstore.data.IndexConfiguration;
+import org.eclipse.store.demo.bookstore.data.IndexDirectoryProvider;
 import org.eclipse.store.demo.bookstore.data.RandomDataAmount;
 import org.eclipse.store.storage.embedded.configuration.types.EmbeddedStorageConfiguration;
 import org.eclipse.store.storage.embedded.types.EmbeddedStorageFoundation;
@@ -129,19 +134,62 @@ public final class BookStoreDemo implements HasLogger
 	}
 
 
-	private final    RandomDataAmount       initialDataAmount;
-	private volatile EmbeddedStorageManager storageManager   ;
+	private final    RandomDataAmount                                             initialDataAmount        ;
+	private final    BiFunction<EmbeddedStorageManager, Data, IndexConfiguration> indexConfigurationFactory;
+	private volatile IndexConfiguration                                           indexConfiguration       ;
+	private volatile EmbeddedStorageManager                                       storageManager           ;
+	private volatile boolean                                                      warm                     ;
 
 	/**
-	 * Creates a new demo instance.
+	 * Creates a new demo instance, with the default {@link IndexConfiguration}.
 	 *
 	 * @param initialDataAmount the amount of data which should be generated if the database is empty
 	 */
 	public BookStoreDemo(final RandomDataAmount initialDataAmount)
+	{
+		this(initialDataAmount, IndexConfiguration.Default());
+	}
+
+	/**
+	 * Creates a new demo instance.
+	 *
+	 * @param initialDataAmount the amount of data which should be generated if the database is empty
+	 * @param indexConfiguration the configuration of the full text search indices
+	 */
+	public BookStoreDemo(
+		final RandomDataAmount   initialDataAmount ,
+		final IndexConfiguration indexConfiguration
+	)
+	{
+		this(initialDataAmount, (storageManager, data) -> indexConfiguration);
+	}
+
+	/**
+	 * Creates a new demo instance, whose index configuration depends on the storage,
+	 * e.g. to keep the indices inside of it, see {@link IndexDirectoryProvider#Storage(EmbeddedStorageManager, Data)}.
+	 * The factory is called once the storage is started and has a root object, before any index is created.
+	 *
+	 * @param initialDataAmount the amount of data which should be generated if the database is empty
+	 * @param indexConfigurationFactory creates the configuration of the full text search indices
+	 */
+	public BookStoreDemo(
+		final RandomDataAmount                                             initialDataAmount        ,
+		final BiFunction<EmbeddedStorageManager, Data, IndexConfiguration> indexConfigurationFactory
+	)
 	{
 		super();
-		this.initialDataAmount = initialDataAmount;
-		BookStoreDemo.instance = this;
+		this.initialDataAmount         = initialDataAmount;
+		this.indexConfigurationFactory = indexConfigurationFactory;
+		BookStoreDemo.instance         = this;
+	}
+
+	/**
+	 * @return the configuration of the full text search indices,
+	 *         or <code>null</code> if the {@link #storageManager()} is not yet created
+	 */
+	public IndexConfiguration indexConfiguration()
+	{
+		return this.indexConfiguration;
 	}
 
 	/**
@@ -190,13 +238,24 @@ public final class BookStoreDemo implements HasLogger
 		foundation.onConnectionFoundation(BinaryHandlersJDK8::registerJDK8TypeHandlers);
 		final EmbeddedStorageManager storageManager = foundation.createEmbeddedStorageManager().start();
 
-		if(storageManager.root() == null)
+		final boolean empty = storageManager.root() == null;
+		if(empty)
+		{
+			storageManager.setRoot(new Data());
+			storageManager.storeRoot();
+		}
+		final Data data = (Data)storageManager.root();
+
+		/*
+		 * Bound before the data is generated, which may already use the indices.
+		 * The storageManager field is not assigned yet, so the configuration must not use it.
+		 */
+		this.indexConfiguration = this.indexConfigurationFactory.apply(storageManager, data);
+
+		if(empty)
 		{
 			this.logger().info("No data found, initializing random data");
 
-			final Data data = new Data();
-			storageManager.setRoot(data);
-			storageManager.storeRoot();
 			final DataMetrics metrics = data.populate(
 				this.initialDataAmount,
 				storageManager
@@ -204,6 +263,7 @@ public final class BookStoreDemo implements HasLogger
 
 			this.logger().info("Random data generated: " + metrics.toString());
 		}
+		data.initialize(storageManager);
 
 		return storageManager;
 	}
@@ -219,13 +279,46 @@ public final class BookStoreDemo implements HasLogger
 		return (Data)this.storageManager().root();
 	}
 
+	/**
+	 * Prepares this demo for user requests, so that they don't have to pay for lazy initialization:
+	 * the storage is started, the book search index is opened and searched for a sample of titles,
+	 * and the purchases of the current year are loaded.
+	 *
+	 * @see #isWarm()
+	 */
+	public void warmUp()
+	{
+		final long start = System.currentTimeMillis();
+		this.logger().info("Warming up");
+
+		final Data data = this.data();
+		data.books().warmUpIndex();
+		data.purchases().computeByYear(Year.now().getValue(), Stream::count);
+
+		this.warm = true;
+		this.logger().info("Warm-up finished in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * @return <code>true</code> if {@link #warmUp()} has completed
+	 */
+	public boolean isWarm()
+	{
+		return this.warm;
+	}
+
 	/**
 	 * Shuts down the {@link EmbeddedStorageManager} of this demo.
+	 * The full text search indices are closed beforehand, which commits all pending changes.
 	 */
 	public synchronized void shutdown()
 	{
 		if(this.storageManager != null)
 		{
+			final Data data = this.data();
+			data.books().closeIndex();
+			data.shops().closeIndex();
+			data.customers().closeIndex();
 			this.storageManager.shutdown();
 			this.storageManager = null;
 		}
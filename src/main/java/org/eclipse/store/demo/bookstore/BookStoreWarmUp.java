@@ -0,0 +1,92 @@
+
+package org.eclipse.store.demo.bookstore;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import org.rapidpm.dependencies.core.logger.HasLogger;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Gates the readiness of the application on the {@link BookStoreDemo#warmUp() warm-up} of the demo.
+ * <p>
+ * When Spring Boot reports the application as ready to accept traffic, the readiness is
+ * reverted to {@link ReadinessState#REFUSING_TRAFFIC} and the warm-up is started in the background.
+ * When it is done, {@link ReadinessState#ACCEPTING_TRAFFIC} is published again.
+ * Load balancers which use the readiness probe, e.g. <code>/actuator/health/readiness</code>
+ * with Spring Boot Actuator, route requests to this node only once it is warm.
+ * <p>
+ * A failed warm-up is logged and doesn't block the readiness, since everything is initialized lazily anyway.
+ *
+ * @see VaadinApplicationConfiguration
+ */
+public class BookStoreWarmUp implements HasLogger
+{
+	private final BookStoreDemo             bookStoreDemo;
+	private final ApplicationEventPublisher publisher    ;
+	private boolean                         started      ;
+	private boolean                         finished     ;
+
+	public BookStoreWarmUp(
+		final BookStoreDemo             bookStoreDemo,
+		final ApplicationEventPublisher publisher
+	)
+	{
+		super();
+		this.bookStoreDemo = bookStoreDemo;
+		this.publisher     = publisher;
+	}
+
+	@EventListener
+	public synchronized void onReadinessChange(final AvailabilityChangeEvent<ReadinessState> event)
+	{
+		if(event.getState() != ReadinessState.ACCEPTING_TRAFFIC || this.finished)
+		{
+			return;
+		}
+
+		AvailabilityChangeEvent.publish(this.publisher, this, ReadinessState.REFUSING_TRAFFIC);
+		if(!this.started)
+		{
+			this.started = true;
+			final Thread thread = new Thread(this::warmUp, "BookStoreDemo-WarmUp");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private void warmUp()
+	{
+		try
+		{
+			this.bookStoreDemo.warmUp();
+		}
+		catch(final RuntimeException e)
+		{
+			this.logger().severe("Warm-up failed", e);
+		}
+		finally
+		{
+			synchronized(this)
+			{
+				this.finished = true;
+			}
+			AvailabilityChangeEvent.publish(this.publisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+		}
+	}
+
+}
@@ -14,6 +14,9 @@ package org.eclipse.store.demo.bookstore;
  * #L%
  */
 
+import static org.eclipse.store.demo.bookstore.data.Books.SEARCH_MAX_OFFSET;
+import static org.eclipse.store.demo.bookstore.data.Books.SEARCH_MAX_PAGE_SIZE;
+
 import java.time.Year;
 import java.util.List;
 
@@ -22,6 +25,7 @@ import org.eclipse.store.demo.bookstore.data.BookSales;
 import org.eclipse.store.demo.bookstore.data.Country;
 import org.eclipse.store.demo.bookstore.data.Data;
 import org.eclipse.store.demo.bookstore.data.Employee;
+import org.eclipse.store.demo.bookstore.data.SearchPage;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -62,30 +66,62 @@ public class Commands
 
 		Country searchCountry(final String countryCode)
 		{
-			return this.data().shops().compute(shops ->
-				shops.map(s -> s.address().city().state().country())
-					.distinct()
-					.filter(c -> c.code().equalsIgnoreCase(countryCode))
-					.findAny()
-					.orElse(null)
-			);
+			return this.data().shops().countryOfCode(countryCode);
 		}
 
 	}
 
 	@Command(
 		name = "books",
-		description = "Prints the books found by the given query.",
+		description = "Prints one page of the books found by the given query.",
 		mixinStandardHelpOptions = true
 	)
 	static class Books extends Abstract
 	{
 		@Option(
 			names = {"--query", "-q"},
-			description = "the title query",
+			description = "the search query",
 			required = true
 		)
-		String query;
+		String       query;
+
+		@Option(
+			names = {"--fields", "-f"},
+			description = "comma separated fields to search: title, author, genre, publisher; default is all",
+			required = false,
+			split = ","
+		)
+		List<String> fields;
+
+		@Option(
+			names = {"--offset", "-o"},
+			description = "the amount of results to skip",
+			required = false,
+			defaultValue = "0"
+		)
+		int          offset;
+
+		@Option(
+			names = {"--after", "-a"},
+			description = "the cursor printed with the previous page, overrides the offset",
+			required = false
+		)
+		String       after;
+
+		@Option(
+			names = {"--page-size", "-p"},
+			description = "the maximum amount of results",
+			required = false,
+			defaultValue = "20"
+		)
+		int          pageSize;
+
+		@Option(
+			names = {"--fuzzy", "-z"},
+			description = "tolerate typos in titles and authors",
+			required = false
+		)
+		boolean      fuzzy;
 
 		Books(final BookStoreDemo bookStoreDemo)
 		{
@@ -95,18 +131,41 @@ public class Commands
 		@Override
 		public void run()
 		{
-			final List<Book> books = this.data().books().searchByTitle(this.query);
-			if(books.isEmpty())
+			// bounded, since the hits of all previous pages are collected
+			if(this.pageSize < 1 || this.pageSize > SEARCH_MAX_PAGE_SIZE)
+			{
+				System.out.println("Page size must be between 1 and " + SEARCH_MAX_PAGE_SIZE);
+				return;
+			}
+			if(this.offset < 0 || this.offset > SEARCH_MAX_OFFSET)
+			{
+				System.out.println("Offset must be between 0 and " + SEARCH_MAX_OFFSET + ", deeper pages need --after");
+				return;
+			}
+
+			final SearchPage<Book> page = this.fuzzy
+				? this.after != null
+					? this.data().books().searchBooksFuzzy(this.query, this.fields, this.after, this.pageSize)
+					: this.data().books().searchBooksFuzzy(this.query, this.fields, this.offset, this.pageSize)
+				: this.after != null
+					? this.data().books().searchBooks(this.query, this.fields, this.after, this.pageSize)
+					: this.data().books().searchBooks(this.query, this.fields, this.offset, this.pageSize)
+			;
+			if(page.results().isEmpty())
 			{
 				System.out.println("No books found");
 			}
 			else
 			{
-				System.out.println(books.size() + " books found:");
-				books.stream().forEach(book ->
+				System.out.println(page.results().size() + " of " + page.totalHits() + " books found:");
+				page.results().stream().forEach(book ->
 				{
 					System.out.println(book.title() + "; by " + book.author().name());
 				});
+				if(page.nextCursor() != null)
+				{
+					System.out.println("Next page: --after " + page.nextCursor());
+				}
 			}
 		}
 	}
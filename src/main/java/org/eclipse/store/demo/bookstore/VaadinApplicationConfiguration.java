@@ -14,7 +14,16 @@ package org.eclipse.store.demo.bookstore;
  * #L%
  */
 
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import org.eclipse.store.demo.bookstore.data.Data;
+import org.eclipse.store.demo.bookstore.data.IndexConfiguration;
+import org.eclipse.store.demo.bookstore.data.IndexDirectoryProvider;
 import org.eclipse.store.demo.bookstore.data.RandomDataAmount;
+import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -30,10 +39,60 @@ public class VaadinApplicationConfiguration
 	 * Manages the creation and disposal of the {@link BookStoreDemo} singleton.
 	 */
 	@Bean(destroyMethod = "shutdown")
-	public BookStoreDemo getBookStoreDemo()
+	public BookStoreDemo getBookStoreDemo(
+		@Value("${bookstore.index.refresh-interval-ms:1000}")       final long   refreshIntervalMillis  ,
+		@Value("${bookstore.index.commit-interval-ms:5000}")        final long   commitIntervalMillis   ,
+		@Value("${bookstore.index.max-uncommitted-documents:1000}") final int    maxUncommittedDocuments,
+		@Value("${bookstore.index.directory:mmap}")                 final String directory              ,
+		@Value("${bookstore.index.path:data/index}")                final String path
+	)
 	{
-		final BookStoreDemo demo = new BookStoreDemo(RandomDataAmount.Medium());
+		final BookStoreDemo demo = new BookStoreDemo(
+			RandomDataAmount.Medium(),
+			(storageManager, data) -> new IndexConfiguration(
+				refreshIntervalMillis  ,
+				commitIntervalMillis   ,
+				maxUncommittedDocuments,
+				directoryProvider(directory, path, storageManager, data)
+			)
+		);
 		demo.storageManager(); // eager init
 		return demo;
 	}
+
+	/**
+	 * Warms up the {@link BookStoreDemo} in the background after the startup,
+	 * while the application refuses traffic.
+	 */
+	@Bean
+	public BookStoreWarmUp getBookStoreWarmUp(
+		final BookStoreDemo             bookStoreDemo,
+		final ApplicationEventPublisher publisher
+	)
+	{
+		return new BookStoreWarmUp(bookStoreDemo, publisher);
+	}
+
+	/**
+	 * Maps the configured directory type to an {@link IndexDirectoryProvider}.
+	 */
+	private static IndexDirectoryProvider directoryProvider(
+		final String                 directory     ,
+		final String                 path          ,
+		final EmbeddedStorageManager storageManager,
+		final Data                   data
+	)
+	{
+		switch(directory.toLowerCase(Locale.ROOT))
+		{
+			case "memory":
+				return IndexDirectoryProvider.InMemory();
+			case "mmap":
+				return IndexDirectoryProvider.MMap(Paths.get(path));
+			case "storage":
+				return IndexDirectoryProvider.Storage(storageManager, data);
+			default:
+				throw new IllegalArgumentException("Unknown index directory type: " + directory);
+		}
+	}
 }
@@ -16,6 +16,7 @@ package org.eclipse.store.demo.bookstore.data;
  */
 
 import static java.util.Objects.requireNonNull;
+import static org.eclipse.store.demo.bookstore.util.InternUtils.intern;
 
 /**
  * Address entity which holds two address lines, zip code and a {@link City}.
@@ -37,9 +38,9 @@ public class Address
 		final City   city
 	)
 	{
-		this.address  = requireNonNull(address , () -> "Address cannot be null" );
-		this.address2 = requireNonNull(address2, () -> "Address2 cannot be null");
-		this.zipCode  = requireNonNull(zipCode , () -> "ZipCode cannot be null" );
+		this.address  = intern(requireNonNull(address , () -> "Address cannot be null" ));
+		this.address2 = intern(requireNonNull(address2, () -> "Address2 cannot be null"));
+		this.zipCode  = intern(requireNonNull(zipCode , () -> "ZipCode cannot be null" ));
 		this.city     = requireNonNull(city    , () -> "City cannot be null"    );
 	}
 
@@ -83,6 +84,25 @@ public class Address
 		return this.city;
 	}
 
+	/**
+	 * Concatenates all parts of this address, from the street to the country,
+	 * used as text of full text indices.
+	 *
+	 * @return the complete address as text
+	 */
+	public String fullText()
+	{
+		final State state = this.city.state();
+		return String.join(" ",
+			this.address,
+			this.address2,
+			this.zipCode,
+			this.city.name(),
+			state.name(),
+			state.country().name()
+		);
+	}
+
 	@Override
 	public String toString()
 	{
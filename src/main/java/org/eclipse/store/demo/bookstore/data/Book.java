@@ -171,6 +171,11 @@ public class Book extends Named
 
 
 	
+	/**
+	 * Compiled {@link #isbn13Pattern()}.
+	 */
+	private static final Pattern ISBN13_PATTERN = Pattern.compile(isbn13Pattern());
+
 	/**
 	 * @return Regular expression for a valid ISBN-13
 	 */
@@ -186,41 +191,153 @@ public class Book extends Named
 	 * @param isbn13 ths ISBN to validate
 	 * @return the given ISBN
 	 * @throws IllegalArgumentException if the given ISBN is invalid
-	 * @throws NumberFormatException if parts of the ISBN are no numbers
 	 */
 	public static String validateIsbn13(final String isbn13)
-    {
+	{
 		requireNonEmpty(isbn13, () -> "ISBN cannot be empty");
 
-		if(!Pattern.matches(isbn13Pattern(), isbn13))
+		if(!ISBN13_PATTERN.matcher(isbn13).matches())
 		{
 			throw new IllegalArgumentException("Invalid ISBN format");
 		}
 
-		final String isbn13withoutSeparators = isbn13.replace("-", "");
+		if(parseIsbn13(isbn13) < 0L)
+		{
+			throw new IllegalArgumentException("Invalid ISBN checksum");
+		}
 
-		int total = 0;
-		for(int i = 0; i < 12; i++)
+		return isbn13;
+	}
+
+	/**
+	 * Converts an ISBN-13 into its canonical numeric form, which is the 13-digit number
+	 * without prefix and separators. Hyphenated and plain notations of the same ISBN
+	 * result in the same key.
+	 *
+	 * @param isbn13 the ISBN to convert
+	 * @return the numeric key of the ISBN
+	 * @throws IllegalArgumentException if the given ISBN is invalid
+	 * @see #parseIsbn13(CharSequence)
+	 */
+	public static long isbn13Key(final CharSequence isbn13)
+	{
+		final long key = parseIsbn13(isbn13);
+		if(key < 0L)
 		{
-			final int digit = Integer.parseInt(isbn13withoutSeparators.substring(i, i + 1));
-			total += i % 2 == 0
-				? digit
-				: digit * 3;
+			throw new IllegalArgumentException("Invalid ISBN: " + isbn13);
 		}
+		return key;
+	}
 
-		int checksum = 10 - total % 10;
-		if(checksum == 10)
+	/**
+	 * Parses an ISBN-13 and verifies its checksum, without allocating any objects.
+	 * <p>
+	 * An optional "ISBN", "ISBN:" or "ISBN-13:" prefix is accepted, as well as single dashes or
+	 * spaces between the digits.
+	 *
+	 * @param isbn13 the ISBN to parse, may be <code>null</code>
+	 * @return the 13-digit number of the ISBN, or -1 if it is invalid
+	 * @see #isbn13Key(CharSequence)
+	 */
+	public static long parseIsbn13(final CharSequence isbn13)
+	{
+		if(isbn13 == null)
 		{
-			checksum = 0;
+			return -1L;
 		}
 
-		if(checksum != Integer.parseInt(isbn13withoutSeparators.substring(12)))
+		final int length = isbn13.length();
+		int       i      = skipIsbnPrefix(isbn13, length);
+		long      value  = 0L;
+		int       digits = 0;
+		int       total  = 0;
+		for(; i < length; i++)
 		{
-			throw new IllegalArgumentException("Invalid ISBN checksum");
+			final char c = isbn13.charAt(i);
+			if(c >= '0' && c <= '9')
+			{
+				if(digits == 13)
+				{
+					return -1L;
+				}
+				final int digit = c - '0';
+				if(digits < 12)
+				{
+					total += (digits & 1) == 0
+						? digit
+						: digit * 3;
+				}
+				value = value * 10L + digit;
+				digits++;
+			}
+			else if((c == '-' || c == ' ')
+				&& digits > 0
+				&& i + 1 < length
+				&& isDigit(isbn13.charAt(i + 1))
+			)
+			{
+				// single separator between digits
+				continue;
+			}
+			else
+			{
+				return -1L;
+			}
 		}
 
-		return isbn13;
-    }
+		if(digits != 13)
+		{
+			return -1L;
+		}
+
+		final long prefix = value / 10_000_000_000L;
+		if(prefix != 978L && prefix != 979L)
+		{
+			return -1L;
+		}
+
+		final int checksum = (10 - total % 10) % 10;
+		return checksum == value % 10L
+			? value
+			: -1L;
+	}
+
+	private static int skipIsbnPrefix(final CharSequence isbn13, final int length)
+	{
+		if(length < 4
+			|| isbn13.charAt(0) != 'I'
+			|| isbn13.charAt(1) != 'S'
+			|| isbn13.charAt(2) != 'B'
+			|| isbn13.charAt(3) != 'N'
+		)
+		{
+			return 0;
+		}
+
+		int i = 4;
+		if(i + 2 < length
+			&& isbn13.charAt(i    ) == '-'
+			&& isbn13.charAt(i + 1) == '1'
+			&& isbn13.charAt(i + 2) == '3'
+		)
+		{
+			i += 3;
+		}
+		if(i < length && isbn13.charAt(i) == ':')
+		{
+			i++;
+		}
+		if(i < length && isbn13.charAt(i) == ' ')
+		{
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isDigit(final char c)
+	{
+		return c >= '0' && c <= '9';
+	}
 
 	/**
 	 * Validates the given title.
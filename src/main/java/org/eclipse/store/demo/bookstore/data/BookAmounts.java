@@ -0,0 +1,269 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+import org.eclipse.serializer.persistence.types.PersistenceStoring;
+
+/**
+ * Compact map of books to amounts, used by {@link Inventory}.
+ * <p>
+ * The books are held in an array sorted by their ISBN-13 key, see {@link Book#isbn13Key(CharSequence)},
+ * with two parallel arrays for the keys and the amounts. Lookups are binary searches over the primitive keys,
+ * so there are neither boxed amounts nor entry objects, and the arrays are persisted as they are.
+ * Slots of books which are out of stock are kept with an amount of zero.
+ * <p>
+ * Amounts of existing slots can be changed atomically by concurrent threads, see {@link #compareAndSet(int, int, int)}.
+ * These current amounts are kept apart from the persisted ones, which only contain the changes
+ * that were explicitly stored, see {@link #storeChanges(int[], int[], boolean, PersistenceStoring)}.
+ * So storing the changes of one operation doesn't store the unstored changes of concurrent ones.
+ * <p>
+ * Adding slots and storing require exclusive access, which is handled by the {@link Inventory} implementation.
+ */
+class BookAmounts
+{
+	private static final VarHandle AMOUNTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private long[]                   keys          ;
+	private Book[]                   books         ;
+	/**
+	 * Stored amounts, see {@link #storeChanges(int[], int[], boolean, PersistenceStoring)}.
+	 */
+	private int[]                    amounts       ;
+	private int                      size          ;
+	/*
+	 * Transient means it is not persisted by EclipseStore, but created on demand.
+	 */
+	private transient volatile int[] currentAmounts;
+
+	BookAmounts(final int capacity)
+	{
+		super();
+
+		this.keys    = new long[capacity];
+		this.books   = new Book[capacity];
+		this.amounts = new int[capacity];
+	}
+
+	/**
+	 * @param amounts the amounts by book to copy
+	 * @return a new map with the given entries
+	 */
+	static BookAmounts of(final Map<Book, Integer> amounts)
+	{
+		final Book[] books = amounts.keySet().toArray(new Book[amounts.size()]);
+		final long[] keys  = new long[books.length];
+		for(int i = 0; i < books.length; i++)
+		{
+			keys[i] = Book.isbn13Key(books[i].isbn13());
+		}
+
+		// sort the books by their keys, via an index permutation
+		final Integer[] order = new Integer[books.length];
+		Arrays.setAll(order, i -> i);
+		Arrays.sort(order, (i1, i2) -> Long.compare(keys[i1], keys[i2]));
+
+		final BookAmounts bookAmounts = new BookAmounts(books.length);
+		for(int i = 0; i < order.length; i++)
+		{
+			final Book book = books[order[i]];
+			bookAmounts.keys[i]    = keys[order[i]];
+			bookAmounts.books[i]   = book;
+			bookAmounts.amounts[i] = amounts.get(book);
+		}
+		bookAmounts.size = books.length;
+		return bookAmounts;
+	}
+
+	/**
+	 * @param key the ISBN-13 key of the book
+	 * @return the slot index of the book, or a negative value if there is no slot
+	 */
+	int indexOf(final long key)
+	{
+		return Arrays.binarySearch(this.keys, 0, this.size, key);
+	}
+
+	/**
+	 * @return the amount of slots, including the ones with an amount of zero
+	 */
+	int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @param index the slot index
+	 * @return the book of the slot
+	 */
+	Book book(final int index)
+	{
+		return this.books[index];
+	}
+
+	/**
+	 * @param index the slot index
+	 * @return the current amount of the slot
+	 */
+	int amount(final int index)
+	{
+		return (int)AMOUNTS.getVolatile(this.currentAmounts(), index);
+	}
+
+	/**
+	 * Atomically sets the amount of a slot, if it is still the expected one.
+	 *
+	 * @param index the slot index
+	 * @param expectedAmount the expected current amount
+	 * @param newAmount the new amount
+	 * @return <code>true</code> if successful
+	 */
+	boolean compareAndSet(
+		final int index         ,
+		final int expectedAmount,
+		final int newAmount
+	)
+	{
+		return AMOUNTS.compareAndSet(this.currentAmounts(), index, expectedAmount, newAmount);
+	}
+
+	/**
+	 * Atomically adds to the amount of a slot.
+	 *
+	 * @param index the slot index
+	 * @param delta the amount to add
+	 * @return the new amount
+	 */
+	int add(
+		final int index,
+		final int delta
+	)
+	{
+		return (int)AMOUNTS.getAndAdd(this.currentAmounts(), index, delta) + delta;
+	}
+
+	/**
+	 * Gets the current amounts, which are initialized with the stored ones after loading.
+	 */
+	private int[] currentAmounts()
+	{
+		/*
+		 * Double-checked locking, since multiple threads may get here at the same time.
+		 * The field (this.currentAmounts) has to be volatile.
+		 */
+		int[] currentAmounts = this.currentAmounts;
+		if(currentAmounts == null)
+		{
+			synchronized(this)
+			{
+				if((currentAmounts = this.currentAmounts) == null)
+				{
+					currentAmounts = this.currentAmounts = Arrays.copyOf(this.amounts, this.amounts.length);
+				}
+			}
+		}
+		return currentAmounts;
+	}
+
+	/**
+	 * Adds a slot for a book, which must not be contained yet. Requires exclusive access.
+	 * The slot is stored with an amount of zero, until the initial amount is stored as a change.
+	 *
+	 * @param book the book
+	 * @param key the ISBN-13 key of the book
+	 * @param amount the initial amount
+	 */
+	void insert(
+		final Book book  ,
+		final long key   ,
+		final int  amount
+	)
+	{
+		final int index          = -this.indexOf(key) - 1;
+		final int size           = this.size;
+		int[]     currentAmounts = this.currentAmounts();
+		if(size == this.keys.length)
+		{
+			final int capacity = Math.max(8, size + (size >> 1));
+			this.keys           = Arrays.copyOf(this.keys   , capacity);
+			this.books          = Arrays.copyOf(this.books  , capacity);
+			this.amounts        = Arrays.copyOf(this.amounts, capacity);
+			this.currentAmounts = currentAmounts = Arrays.copyOf(currentAmounts, capacity);
+		}
+		System.arraycopy(this.keys     , index, this.keys     , index + 1, size - index);
+		System.arraycopy(this.books    , index, this.books    , index + 1, size - index);
+		System.arraycopy(this.amounts  , index, this.amounts  , index + 1, size - index);
+		System.arraycopy(currentAmounts, index, currentAmounts, index + 1, size - index);
+		this.keys[index]      = key;
+		this.books[index]     = book;
+		this.amounts[index]   = 0;
+		currentAmounts[index] = amount;
+		this.size++;
+	}
+
+	/**
+	 * Calls an action for every book in stock, without creating any objects.
+	 *
+	 * @param action the action to perform with the book and its positive amount
+	 */
+	void forEach(final ObjIntConsumer<? super Book> action)
+	{
+		for(int i = 0; i < this.size; i++)
+		{
+			final int amount = this.amount(i);
+			if(amount > 0)
+			{
+				action.accept(this.books[i], amount);
+			}
+		}
+	}
+
+	/**
+	 * Adds the changes of one operation to the stored amounts, and stores them. Requires exclusive access.
+	 * The current amounts of the slots, which may contain unstored changes of other operations, are not stored.
+	 *
+	 * @param indexes the slot indexes of the changes
+	 * @param deltas the changes of the amounts, which were already applied to the current amounts
+	 * @param slotsAdded if slots were added since the last store, in which case the whole map is stored
+	 * @param persister the persister to store them with
+	 */
+	void storeChanges(
+		final int[]              indexes   ,
+		final int[]              deltas    ,
+		final boolean            slotsAdded,
+		final PersistenceStoring persister
+	)
+	{
+		for(int i = 0; i < indexes.length; i++)
+		{
+			this.amounts[indexes[i]] += deltas[i];
+		}
+		if(slotsAdded)
+		{
+			// the arrays are replaced or modified in place by inserts
+			persister.storeAll(this, this.keys, this.books, this.amounts);
+		}
+		else
+		{
+			persister.store(this.amounts);
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+/**
+ * Indexable attributes of a {@link Book}, used as key extractors for composite indexes.
+ *
+ * @see Books#createCompositeIndex(java.util.Collection)
+ */
+public enum BookAttribute
+{
+	AUTHOR,
+	GENRE,
+	PUBLISHER,
+	LANGUAGE;
+
+	/**
+	 * Extracts the value of this attribute from a book.
+	 *
+	 * @param book the book
+	 * @return the attribute's value
+	 */
+	public Named of(final Book book)
+	{
+		switch(this)
+		{
+			case AUTHOR   : return book.author();
+			case GENRE    : return book.genre();
+			case PUBLISHER: return book.publisher();
+			case LANGUAGE : return book.language();
+
+			default:
+				throw new IllegalStateException("Unsupported attribute: " + this);
+		}
+	}
+
+}
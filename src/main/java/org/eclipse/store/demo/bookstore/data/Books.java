@@ -15,27 +15,55 @@ package org.eclipse.store.demo.bookstore.data;
  * #L%
  */
 
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
+import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requireNonBlank;
+import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requireNonEmpty;
+import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requireZeroOrPositive;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Stream;
 
+import javax.money.MonetaryAmount;
+
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.QueryBuilder;
 import org.eclipse.serializer.concurrency.LockScope;
+import org.eclipse.serializer.exceptions.IORuntimeException;
 import org.eclipse.serializer.persistence.types.PersistenceStoring;
 import org.eclipse.store.demo.bookstore.BookStoreDemo;
 import org.eclipse.store.demo.bookstore.data.Index.DocumentPopulator;
-import org.eclipse.store.demo.bookstore.data.Index.EntityMatcher;
+import org.eclipse.store.demo.bookstore.data.Index.EntityResolver;
 import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
+import org.rapidpm.dependencies.core.logger.HasLogger;
 
 /**
  * Range of all books sold by this company.
@@ -48,16 +76,78 @@ import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
  * @see Data#books()
  * @see LockScope
  */
-public class Books extends LockScope
+public class Books extends LockScope implements HasLogger
 {
+	/**
+	 * Fields of the full text index, which can be used by {@link #searchBooks(String, Collection, int, int)}.
+	 */
+	public final static Set<String> SEARCH_FIELDS        = Set.of("title", "author", "genre", "publisher");
+
+	/**
+	 * Fields of the full text index, which facet counts are computed for by
+	 * {@link #searchBooksWithFacets(String, Collection, int, int)}.
+	 */
+	public final static Set<String> FACET_FIELDS         = Set.of("genre", "publisher", "language");
+
+	/**
+	 * Fields of the full text index, which can be used by {@link #searchBooksFuzzy(String, Collection, int, int)}.
+	 */
+	public final static Set<String> FUZZY_SEARCH_FIELDS  = Set.of("title", "author");
+
+	/**
+	 * Maximum page size of the paged book searches, which is accepted from clients.
+	 */
+	public final static int         SEARCH_MAX_PAGE_SIZE = 100;
+
+	/**
+	 * Maximum offset of the paged book searches, which is accepted from clients.
+	 * Deeper pages have to be requested with the cursor of the previous page.
+	 */
+	public final static int         SEARCH_MAX_OFFSET    = 10_000;
+
+	/**
+	 * Version of the document layout of the full text index, has to be increased with every change.
+	 */
+	private final static String     INDEX_DOCUMENT_VERSION   = "3";
+
+	/**
+	 * Amount of sample titles searched for by {@link #warmUpIndex()}.
+	 */
+	private final static int        WARM_UP_QUERIES          = 20;
+
+	/**
+	 * Maximum amount of cached search results, see {@link #searchCacheMetrics()}.
+	 */
+	private final static int        SEARCH_CACHE_SIZE        = 1000;
+
+	/**
+	 * Maximum amount of hits of a cached search result, to bound the size of the cache,
+	 * since {@link #searchByTitle(String)} returns all hits.
+	 */
+	private final static int        SEARCH_CACHE_MAX_RESULTS = 100;
+
 	/*
 	 * Multiple maps holding references to the books, for a faster lookup.
+	 * The ones which are not final are missing in data of older versions, see #migrate(PersistenceStoring).
 	 */
-	private final Map<String, Book>          isbn13ToBook     = new HashMap<>();
+	private       IsbnBookMap                isbn13KeyToBook  = new IsbnBookMap();
 	private final Map<Author, List<Book>>    authorToBooks    = new HashMap<>();
 	private final Map<Genre, List<Book>>     genreToBooks     = new HashMap<>();
 	private final Map<Publisher, List<Book>> publisherToBooks = new HashMap<>();
 	private final Map<Language, List<Book>>  languageToBooks  = new HashMap<>();
+	/**
+	 * Books by their retail price in minor units of the {@link BookStoreDemo#CURRENCY_UNIT}.
+	 */
+	private NavigableMap<Long, List<Book>>   retailPriceToBooks = new TreeMap<>();
+	/**
+	 * Composite indexes declared by {@link #createCompositeIndex(Collection)}.
+	 */
+	private List<CompositeBookIndex>         compositeIndexes = new ArrayList<>();
+	/**
+	 * Books by ISBN string of older versions, which is replaced by {@link #isbn13KeyToBook}.
+	 * It is only present in data of these versions until it is migrated, see {@link #migrate(PersistenceStoring)}.
+	 */
+	private Map<String, Book>                isbn13ToBook;
 	/**
 	 * Index used by {@link #searchByTitle(String)}.
 	 */
@@ -65,6 +155,24 @@ public class Books extends LockScope
 	 * Transient means it is not persisted by EclipseStore, but created on demand.
 	 */
 	private transient volatile Index<Book>   index;
+	/*
+	 * Sorted snapshots, created on demand and dropped on every write.
+	 * They are shared between readers and never handed out, the public accessors return copies.
+	 */
+	private transient volatile List<Book>      sortedBooks     ;
+	private transient volatile List<Author>    sortedAuthors   ;
+	private transient volatile List<Genre>     sortedGenres    ;
+	private transient volatile List<Publisher> sortedPublishers;
+	private transient volatile List<Language>  sortedLanguages ;
+	/**
+	 * Autocomplete index used by {@link #suggest(String, int)}, created on demand.
+	 */
+	private transient volatile PrefixSuggester      suggester       ;
+	private transient volatile ToLongFunction<Book> suggestionWeight;
+	/**
+	 * Results of the full text searches, created on demand.
+	 */
+	private transient volatile SearchResultCache<Book> searchCache;
 	
 	public Books()
 	{
@@ -98,9 +206,18 @@ public class Books extends LockScope
 	{
 		this.write(() ->
 		{
-			this.ensureIndex().add(book);
-			this.addToCollections(book);
-			this.storeCollections(persister);
+			// only an open index is fed, a closed one is reconciled with the catalog when it is opened
+			final Index<Book> index = this.index;
+			if(index != null)
+			{
+				index.add(book);
+			}
+			final Set<Object> changedObjects = newIdentitySet();
+			this.addToCollections(book, changedObjects);
+			this.storeCollections(persister, changedObjects);
+			this.invalidateSortedViews();
+			this.addToSuggester(book);
+			this.clearSearchCache();
 		});
 	}
 
@@ -118,6 +235,8 @@ public class Books extends LockScope
 
 	/**
 	 * Adds a range of new books and stores it with the given persister.
+	 * <p>
+	 * The books are indexed for full text search in the background, see {@link #indexingLag()}.
 	 *
 	 * @param books the new books
 	 * @param persister the persister to store them with
@@ -130,9 +249,80 @@ public class Books extends LockScope
 	{
 		this.write(() ->
 		{
-			this.ensureIndex().addAll(books);
-			books.forEach(this::addToCollections);
-			this.storeCollections(persister);
+			final Set<Object> changedObjects = newIdentitySet();
+			books.forEach(book -> this.addToCollections(book, changedObjects));
+			this.storeCollections(persister, changedObjects);
+			this.invalidateSortedViews();
+			books.forEach(this::addToSuggester);
+			this.clearSearchCache();
+			/*
+			 * The object graph is committed at this point,
+			 * an open full text index is fed afterwards by a background thread.
+			 * A closed one is reconciled with the catalog when it is opened.
+			 */
+			final Index<Book> index = this.index;
+			if(index != null)
+			{
+				index.addAllInBackground(books);
+			}
+		});
+	}
+
+	/**
+	 * Migrates data of older versions, which kept the books in a map by ISBN string
+	 * and had neither the retail price index nor composite indexes.
+	 * Nothing happens if the data is up to date.
+	 * This method is used exclusively by {@link Data#initialize(PersistenceStoring)}.
+	 * <p>
+	 * Older versions validated the ISBNs with the same rules, see {@link Book#validateIsbn13(String)},
+	 * so all stored ISBNs have a numeric key. Notations of the same ISBN, which were distinct books
+	 * in older versions, can't be told apart anymore, and only the first one is found by its ISBN.
+	 *
+	 * @param persister the persister to store the migrated data with
+	 * @throws IllegalStateException if a stored ISBN is invalid, in which case nothing is migrated
+	 */
+	void migrate(final PersistenceStoring persister)
+	{
+		this.write(() ->
+		{
+			if(this.isbn13KeyToBook != null)
+			{
+				return;
+			}
+
+			final Map<String, Book> legacyBooks = this.isbn13ToBook != null
+				? this.isbn13ToBook
+				: Map.of()
+			;
+			final IsbnBookMap isbn13KeyToBook = new IsbnBookMap(Math.max(legacyBooks.size(), 1024));
+			for(final Book book : legacyBooks.values())
+			{
+				final long key = Book.parseIsbn13(book.isbn13());
+				if(key < 0L)
+				{
+					throw new IllegalStateException("Stored book has an invalid ISBN: " + book.isbn13());
+				}
+				if(isbn13KeyToBook.get(key) == null)
+				{
+					isbn13KeyToBook.put(key, book);
+				}
+				else
+				{
+					this.logger().warning(
+						"Duplicate notation of ISBN " + book.isbn13() + ", only the first book is found by it"
+					);
+				}
+			}
+
+			this.isbn13KeyToBook    = isbn13KeyToBook;
+			this.retailPriceToBooks = new TreeMap<>();
+			this.compositeIndexes   = new ArrayList<>();
+			this.isbn13ToBook       = null;
+			final Set<Object> changedObjects = newIdentitySet();
+			isbn13KeyToBook.forEach(book -> this.addToPriceIndex(book, changedObjects));
+
+			persister.store(this);
+			this.logger().info("Migrated " + isbn13KeyToBook.size() + " books");
 		});
 	}
 
@@ -140,30 +330,85 @@ public class Books extends LockScope
 	 * Stores all collections of this implementation with the given persister.
 	 *
 	 * @param persister the EclipseStore persister used to store the objects
+	 * @param changedObjects further objects which were modified and have to be stored
 	 */
-	private void storeCollections(final PersistenceStoring persister)
+	private void storeCollections(
+		final PersistenceStoring persister     ,
+		final Set<Object>        changedObjects
+	)
 	{
+		this.isbn13KeyToBook.store(persister);
 		persister.storeAll(
-			this.isbn13ToBook    ,
-			this.authorToBooks   ,
-			this.genreToBooks    ,
-			this.publisherToBooks,
-			this.languageToBooks
+			this.authorToBooks     ,
+			this.genreToBooks      ,
+			this.publisherToBooks  ,
+			this.languageToBooks   ,
+			this.retailPriceToBooks
 		);
+		if(!changedObjects.isEmpty())
+		{
+			persister.storeAll(changedObjects);
+		}
 	}
 	
 	/**
 	 * Adds a book to all collections used by this implementation.
 	 *
 	 * @param book the book to add
+	 * @param changedObjects collector of further objects which have to be stored
 	 */
-	private void addToCollections(final Book book)
+	private void addToCollections(
+		final Book        book          ,
+		final Set<Object> changedObjects
+	)
 	{
-		this.isbn13ToBook.put(book.isbn13(), book);
+		this.isbn13KeyToBook.put(Book.isbn13Key(book.isbn13()), book);
 		this.addToMap(this.authorToBooks   , book.author()   , book);
 		this.addToMap(this.genreToBooks    , book.genre()    , book);
 		this.addToMap(this.publisherToBooks, book.publisher(), book);
 		this.addToMap(this.languageToBooks , book.language() , book);
+		this.addToPriceIndex(book, changedObjects);
+		this.compositeIndexes.forEach(index -> index.add(book));
+	}
+
+	/**
+	 * Adds a book to the retail price index.
+	 * Lists which are already stored have to be stored again, since storing the map doesn't include them.
+	 */
+	private void addToPriceIndex(
+		final Book        book          ,
+		final Set<Object> changedObjects
+	)
+	{
+		final Long       price = minorUnits(book.retailPrice());
+		final List<Book> list  = this.retailPriceToBooks.get(price);
+		if(list == null)
+		{
+			final List<Book> newList = new ArrayList<>(4);
+			newList.add(book);
+			this.retailPriceToBooks.put(price, newList);
+		}
+		else
+		{
+			list.add(book);
+			changedObjects.add(list);
+		}
+	}
+
+	/**
+	 * Converts a price into minor units, e.g. cents.
+	 */
+	static long minorUnits(final MonetaryAmount amount)
+	{
+		return amount.getNumber().numberValue(BigDecimal.class)
+			.movePointRight(amount.getCurrency().getDefaultFractionDigits())
+			.setScale(0, RoundingMode.HALF_UP)
+			.longValueExact();
+	}
+
+	private static Set<Object> newIdentitySet()
+	{
+		return Collections.newSetFromMap(new IdentityHashMap<>());
 	}
 
 	/**
@@ -197,9 +442,25 @@ public class Books extends LockScope
 	public List<Book> all()
 	{
 		return this.read(() ->
-			this.isbn13ToBook.values().stream()
-				.sorted()
-				.collect(toList())
+			new ArrayList<>(this.sortedBooks())
+		);
+	}
+
+	/**
+	 * Gets a page of all books, sorted like {@link #all()}.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param offset zero or positive index of the first element
+	 * @param limit maximum amount of elements
+	 * @return the requested page, or an empty list if the offset exceeds the amount of books
+	 */
+	public List<Book> all(
+		final int offset,
+		final int limit
+	)
+	{
+		return this.read(() ->
+			page(this.sortedBooks(), offset, limit)
 		);
 	}
 
@@ -212,9 +473,25 @@ public class Books extends LockScope
 	public List<Author> authors()
 	{
 		return this.read(() ->
-			this.authorToBooks.keySet().stream()
-				.sorted()
-				.collect(toList())
+			new ArrayList<>(this.sortedAuthors())
+		);
+	}
+
+	/**
+	 * Gets a page of all authors, sorted like {@link #authors()}.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param offset zero or positive index of the first element
+	 * @param limit maximum amount of elements
+	 * @return the requested page, or an empty list if the offset exceeds the amount of authors
+	 */
+	public List<Author> authors(
+		final int offset,
+		final int limit
+	)
+	{
+		return this.read(() ->
+			page(this.sortedAuthors(), offset, limit)
 		);
 	}
 
@@ -227,9 +504,25 @@ public class Books extends LockScope
 	public List<Genre> genres()
 	{
 		return this.read(() ->
-			this.genreToBooks.keySet().stream()
-				.sorted()
-				.collect(toList())
+			new ArrayList<>(this.sortedGenres())
+		);
+	}
+
+	/**
+	 * Gets a page of all genres, sorted like {@link #genres()}.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param offset zero or positive index of the first element
+	 * @param limit maximum amount of elements
+	 * @return the requested page, or an empty list if the offset exceeds the amount of genres
+	 */
+	public List<Genre> genres(
+		final int offset,
+		final int limit
+	)
+	{
+		return this.read(() ->
+			page(this.sortedGenres(), offset, limit)
 		);
 	}
 
@@ -242,9 +535,25 @@ public class Books extends LockScope
 	public List<Publisher> publishers()
 	{
 		return this.read(() ->
-			this.publisherToBooks.keySet().stream()
-				.sorted()
-				.collect(toList())
+			new ArrayList<>(this.sortedPublishers())
+		);
+	}
+
+	/**
+	 * Gets a page of all publishers, sorted like {@link #publishers()}.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param offset zero or positive index of the first element
+	 * @param limit maximum amount of elements
+	 * @return the requested page, or an empty list if the offset exceeds the amount of publishers
+	 */
+	public List<Publisher> publishers(
+		final int offset,
+		final int limit
+	)
+	{
+		return this.read(() ->
+			page(this.sortedPublishers(), offset, limit)
 		);
 	}
 
@@ -257,12 +566,126 @@ public class Books extends LockScope
 	public List<Language> languages()
 	{
 		return this.read(() ->
-			this.languageToBooks.keySet().stream()
-				.sorted()
-				.collect(toList())
+			new ArrayList<>(this.sortedLanguages())
+		);
+	}
+
+	/**
+	 * Gets a page of all languages, sorted like {@link #languages()}.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param offset zero or positive index of the first element
+	 * @param limit maximum amount of elements
+	 * @return the requested page, or an empty list if the offset exceeds the amount of languages
+	 */
+	public List<Language> languages(
+		final int offset,
+		final int limit
+	)
+	{
+		return this.read(() ->
+			page(this.sortedLanguages(), offset, limit)
+		);
+	}
+
+	/**
+	 * Must be called with at least a read lock.
+	 */
+	private List<Book> sortedBooks()
+	{
+		List<Book> list = this.sortedBooks;
+		if(list == null)
+		{
+			list = this.sortedBooks = sortedSnapshot(this.isbn13KeyToBook.stream());
+		}
+		return list;
+	}
+
+	/**
+	 * Must be called with at least a read lock.
+	 */
+	private List<Author> sortedAuthors()
+	{
+		List<Author> list = this.sortedAuthors;
+		if(list == null)
+		{
+			list = this.sortedAuthors = sortedSnapshot(this.authorToBooks.keySet().stream());
+		}
+		return list;
+	}
+
+	/**
+	 * Must be called with at least a read lock.
+	 */
+	private List<Genre> sortedGenres()
+	{
+		List<Genre> list = this.sortedGenres;
+		if(list == null)
+		{
+			list = this.sortedGenres = sortedSnapshot(this.genreToBooks.keySet().stream());
+		}
+		return list;
+	}
+
+	/**
+	 * Must be called with at least a read lock.
+	 */
+	private List<Publisher> sortedPublishers()
+	{
+		List<Publisher> list = this.sortedPublishers;
+		if(list == null)
+		{
+			list = this.sortedPublishers = sortedSnapshot(this.publisherToBooks.keySet().stream());
+		}
+		return list;
+	}
+
+	/**
+	 * Must be called with at least a read lock.
+	 */
+	private List<Language> sortedLanguages()
+	{
+		List<Language> list = this.sortedLanguages;
+		if(list == null)
+		{
+			list = this.sortedLanguages = sortedSnapshot(this.languageToBooks.keySet().stream());
+		}
+		return list;
+	}
+
+	/**
+	 * Drops all sorted snapshots, must be called with a write lock.
+	 */
+	private void invalidateSortedViews()
+	{
+		this.sortedBooks      = null;
+		this.sortedAuthors    = null;
+		this.sortedGenres     = null;
+		this.sortedPublishers = null;
+		this.sortedLanguages  = null;
+	}
+
+	private static <E extends Comparable<? super E>> List<E> sortedSnapshot(final Stream<E> stream)
+	{
+		return Collections.unmodifiableList(
+			stream.sorted().collect(toList())
 		);
 	}
 
+	private static <E> List<E> page(
+		final List<E> list  ,
+		final int     offset,
+		final int     limit
+	)
+	{
+		requireZeroOrPositive(offset, () -> "Offset cannot be negative");
+		requireZeroOrPositive(limit, () -> "Limit cannot be negative");
+		final int size = list.size();
+		final int from = Math.min(offset, size);
+		final int to   = (int)Math.min((long)from + limit, size);
+		return new ArrayList<>(list.subList(from, to));
+	}
+
 	/**
 	 * Gets the total amount of all books.
 	 *
@@ -271,7 +694,7 @@ public class Books extends LockScope
 	public int bookCount()
 	{
 		return this.read(
-			this.isbn13ToBook::size
+			this.isbn13KeyToBook::size
 		);
 	}
 
@@ -295,7 +718,7 @@ public class Books extends LockScope
 	public <T> T compute(final Function<Stream<Book>, T> streamFunction)
 	{
 		return this.read(() ->
-			streamFunction.apply(this.isbn13ToBook.values().stream())
+			streamFunction.apply(this.isbn13KeyToBook.stream())
 		);
 	}
 
@@ -400,64 +823,223 @@ public class Books extends LockScope
 	}
 
 	/**
-	 * Gets the book with a specific ISBN or <code>null</code> if none was found.
+	 * Creates a composite index over a combination of attributes and stores it with the
+	 * {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.createCompositeIndex(attributes, BookStoreDemo.getInstance().storageManager())</pre>
 	 *
-	 * @param isbn13 the ISBN to search by
-	 * @return the matching book or <code>null</code>
+	 * @param attributes the attributes to index
 	 */
-	public Book ofIsbn13(final String isbn13)
+	public void createCompositeIndex(final Collection<BookAttribute> attributes)
 	{
-		return this.read(() ->
-			this.isbn13ToBook.get(isbn13)
-		);
+		this.createCompositeIndex(attributes, BookStoreDemo.getInstance().storageManager());
 	}
 
 	/**
-	 * Executes a function with a {@link Stream} of {@link Genre}s and returns the computed value.
+	 * Creates a composite index over a combination of attributes and stores it with the given persister.
+	 * Nothing happens if an index with the same attributes already exists.
+	 * <p>
+	 * The index is maintained when books are added and is used by {@link #computeBy(Map, Function)}.
+	 * Only the attributes are stored, the entries are built in memory on first use.
 	 *
-	 * @param <T> the return type
-	 * @param streamFunction computing function
-	 * @return the computed result
+	 * @param attributes the attributes to index, not empty
+	 * @param persister the persister to store it with
+	 * @see #createCompositeIndex(Collection)
 	 */
-	public <T> T computeGenres(final Function<Stream<Genre>, T> streamFunction)
+	public void createCompositeIndex(
+		final Collection<BookAttribute> attributes,
+		final PersistenceStoring        persister
+	)
 	{
-		return this.read(() ->
-			streamFunction.apply(this.genreToBooks.keySet().stream())
+		final Set<BookAttribute> attributeSet = EnumSet.copyOf(
+			requireNonEmpty(attributes, () -> "Attributes cannot be empty")
 		);
+		this.write(() ->
+		{
+			if(this.compositeIndexes.stream().anyMatch(index -> index.indexes(attributeSet)))
+			{
+				return;
+			}
+
+			this.compositeIndexes.add(new CompositeBookIndex(attributeSet));
+			persister.store(this.compositeIndexes);
+		});
 	}
 
 	/**
-	 * Executes a function with a {@link Stream} of {@link Author}s and returns the computed value.
+	 * Executes a function with a {@link Stream} of {@link Book}s, which match all given criteria,
+	 * and returns the computed value.
+	 * <p>
+	 * The candidates of every matching composite index and single attribute map are collected,
+	 * and only the smallest candidate set is intersected with the remaining criteria.
+	 * <pre>
+	 * List&lt;Book&gt; books = computeBy(
+	 *    Map.of(BookAttribute.GENRE, genre, BookAttribute.LANGUAGE, language),
+	 *    stream -> stream.collect(toList())
+	 * );
+	 * </pre>
 	 *
 	 * @param <T> the return type
+	 * @param criteria the attribute values to filter by, not empty
 	 * @param streamFunction computing function
 	 * @return the computed result
+	 * @see #createCompositeIndex(Collection)
 	 */
-	public <T> T computeAuthors(final Function<Stream<Author>, T> streamFunction)
+	public <T> T computeBy(
+		final Map<BookAttribute, ? extends Named> criteria      ,
+		final Function<Stream<Book>, T>           streamFunction
+	)
 	{
+		if(criteria.isEmpty())
+		{
+			throw new IllegalArgumentException("Criteria cannot be empty");
+		}
+
 		return this.read(() ->
-			streamFunction.apply(this.authorToBooks.keySet().stream())
-		);
+		{
+			List<Book> smallest = null;
+			for(final CompositeBookIndex index : this.compositeIndexes)
+			{
+				if(index.isCoveredBy(criteria))
+				{
+					final List<Book> candidates = index.get(criteria, this.isbn13KeyToBook);
+					if(candidates == null)
+					{
+						return streamFunction.apply(Stream.empty());
+					}
+					if(smallest == null || candidates.size() < smallest.size())
+					{
+						smallest = candidates;
+					}
+				}
+			}
+			for(final Map.Entry<BookAttribute, ? extends Named> criterion : criteria.entrySet())
+			{
+				final List<Book> candidates = this.singleAttributeMap(criterion.getKey()).get(criterion.getValue());
+				if(candidates == null)
+				{
+					return streamFunction.apply(Stream.empty());
+				}
+				if(smallest == null || candidates.size() < smallest.size())
+				{
+					smallest = candidates;
+				}
+			}
+
+			return streamFunction.apply(
+				smallest.stream().filter(book ->
+					criteria.entrySet().stream().allMatch(
+						criterion -> criterion.getKey().of(book).equals(criterion.getValue())
+					)
+				)
+			);
+		});
 	}
 
 	/**
-	 * Executes a function with a {@link Stream} of {@link Publisher}s and returns the computed value.
+	 * Gets all books which match all given criteria.
 	 *
-	 * @param <T> the return type
-	 * @param streamFunction computing function
-	 * @return the computed result
+	 * @param criteria the attribute values to filter by, not empty
+	 * @return a list of books
+	 * @see #computeBy(Map, Function)
 	 */
-	public <T> T computePublishers(final Function<Stream<Publisher>, T> streamFunction)
+	public List<Book> allBy(final Map<BookAttribute, ? extends Named> criteria)
 	{
-		return this.read(() ->
-			streamFunction.apply(this.publisherToBooks.keySet().stream())
+		return this.computeBy(
+			criteria,
+			books -> books.collect(toList())
 		);
 	}
 
-	/**
-	 * Executes a function with a {@link Stream} of {@link Language}s and returns the computed value.
-	 *
-	 * @param <T> the return type
+	private Map<? extends Named, List<Book>> singleAttributeMap(final BookAttribute attribute)
+	{
+		switch(attribute)
+		{
+			case AUTHOR   : return this.authorToBooks;
+			case GENRE    : return this.genreToBooks;
+			case PUBLISHER: return this.publisherToBooks;
+			case LANGUAGE : return this.languageToBooks;
+
+			default:
+				throw new IllegalArgumentException("Unsupported attribute: " + attribute);
+		}
+	}
+
+	/**
+	 * Gets the book with a specific ISBN or <code>null</code> if none was found.
+	 * Hyphenated and plain notations of the same ISBN find the same book.
+	 *
+	 * @param isbn13 the ISBN to search by
+	 * @return the matching book or <code>null</code>
+	 * @see #ofIsbn13(long)
+	 */
+	public Book ofIsbn13(final String isbn13)
+	{
+		final long key = Book.parseIsbn13(isbn13);
+		return key < 0L
+			? null
+			: this.ofIsbn13(key);
+	}
+
+	/**
+	 * Gets the book with a specific ISBN key or <code>null</code> if none was found.
+	 *
+	 * @param isbn13Key the canonical ISBN key to search by, see {@link Book#isbn13Key(CharSequence)}
+	 * @return the matching book or <code>null</code>
+	 */
+	public Book ofIsbn13(final long isbn13Key)
+	{
+		return this.read(() ->
+			this.isbn13KeyToBook.get(isbn13Key)
+		);
+	}
+
+	/**
+	 * Executes a function with a {@link Stream} of {@link Genre}s and returns the computed value.
+	 *
+	 * @param <T> the return type
+	 * @param streamFunction computing function
+	 * @return the computed result
+	 */
+	public <T> T computeGenres(final Function<Stream<Genre>, T> streamFunction)
+	{
+		return this.read(() ->
+			streamFunction.apply(this.genreToBooks.keySet().stream())
+		);
+	}
+
+	/**
+	 * Executes a function with a {@link Stream} of {@link Author}s and returns the computed value.
+	 *
+	 * @param <T> the return type
+	 * @param streamFunction computing function
+	 * @return the computed result
+	 */
+	public <T> T computeAuthors(final Function<Stream<Author>, T> streamFunction)
+	{
+		return this.read(() ->
+			streamFunction.apply(this.authorToBooks.keySet().stream())
+		);
+	}
+
+	/**
+	 * Executes a function with a {@link Stream} of {@link Publisher}s and returns the computed value.
+	 *
+	 * @param <T> the return type
+	 * @param streamFunction computing function
+	 * @return the computed result
+	 */
+	public <T> T computePublishers(final Function<Stream<Publisher>, T> streamFunction)
+	{
+		return this.read(() ->
+			streamFunction.apply(this.publisherToBooks.keySet().stream())
+		);
+	}
+
+	/**
+	 * Executes a function with a {@link Stream} of {@link Language}s and returns the computed value.
+	 *
+	 * @param <T> the return type
 	 * @param streamFunction computing function
 	 * @return the computed result
 	 */
@@ -479,10 +1061,534 @@ public class Books extends LockScope
 	 */
 	public List<Book> searchByTitle(final String queryText)
 	{
-		final Index<Book>  index        = this.ensureIndex();
-		final QueryBuilder queryBuilder = index.createQueryBuilder();
-		final Query        query        = queryBuilder.createPhraseQuery("title", queryText);
-		return index.search(query, Integer.MAX_VALUE);
+		return this.cachedSearch(
+			searchCacheKey("title", queryText, null, null, 0),
+			titleSearch(queryText)
+		).results();
+	}
+
+	private static Function<Index<Book>, SearchPage<Book>> titleSearch(final String queryText)
+	{
+		return index ->
+		{
+			final QueryBuilder queryBuilder = index.queryBuilder();
+			final Query        query        = queryBuilder.createPhraseQuery("title", queryText);
+			final List<Book>   books        = index.search(query, Integer.MAX_VALUE);
+			return new SearchPage<>(books.size(), books, null);
+		};
+	}
+
+	/**
+	 * Searches books by title, author, genre and publisher, and returns one page of the results,
+	 * ordered by relevance. Matches in the title are ranked higher.
+	 *
+	 * @param queryText the search query
+	 * @param fields the fields to search, see {@link #SEARCH_FIELDS}, <code>null</code> or empty for all
+	 * @param offset zero or positive amount of results to skip
+	 * @param pageSize positive maximum number of results
+	 * @return the requested page, including the total amount of hits
+	 */
+	public SearchPage<Book> searchBooks(
+		final String             queryText,
+		final Collection<String> fields   ,
+		final int                offset   ,
+		final int                pageSize
+	)
+	{
+		return this.cachedSearch(
+			searchCacheKey("search", queryText, fields, offset, pageSize),
+			index -> index.search(
+				this.createSearchQuery(index, queryText, fields),
+				offset,
+				pageSize
+			)
+		);
+	}
+
+	/**
+	 * Searches books by title, author, genre and publisher, and returns one page of the results,
+	 * ordered by relevance. Matches in the title are ranked higher.
+	 * <p>
+	 * Unlike {@link #searchBooks(String, Collection, int, int)}, deep pages don't need to
+	 * collect all previous results again.
+	 *
+	 * @param queryText the search query
+	 * @param fields the fields to search, see {@link #SEARCH_FIELDS}, <code>null</code> or empty for all
+	 * @param searchAfter the {@link SearchPage#nextCursor()} of the previous page, or <code>null</code> for the first page
+	 * @param pageSize positive maximum number of results
+	 * @return the requested page, including the total amount of hits
+	 */
+	public SearchPage<Book> searchBooks(
+		final String             queryText  ,
+		final Collection<String> fields     ,
+		final String             searchAfter,
+		final int                pageSize
+	)
+	{
+		return this.cachedSearch(
+			searchCacheKey("search", queryText, fields, searchAfter, pageSize),
+			index -> index.search(
+				this.createSearchQuery(index, queryText, fields),
+				searchAfter,
+				pageSize
+			)
+		);
+	}
+
+	/**
+	 * Searches books like {@link #searchBooks(String, Collection, int, int)}, and counts
+	 * genres, publishers and languages of all hits.
+	 * The counts are computed by Lucene, without resolving the hits to books.
+	 *
+	 * @param queryText the search query
+	 * @param fields the fields to search, see {@link #SEARCH_FIELDS}, <code>null</code> or empty for all
+	 * @param offset zero or positive amount of results to skip
+	 * @param pageSize positive maximum number of results
+	 * @return the requested page, including the total amount of hits and the {@link SearchPage#facets()}
+	 * @see #FACET_FIELDS
+	 */
+	public SearchPage<Book> searchBooksWithFacets(
+		final String             queryText,
+		final Collection<String> fields   ,
+		final int                offset   ,
+		final int                pageSize
+	)
+	{
+		return this.cachedSearch(
+			searchCacheKey("facets", queryText, fields, offset, pageSize),
+			this.facetSearch(queryText, fields, offset, pageSize)
+		);
+	}
+
+	private Function<Index<Book>, SearchPage<Book>> facetSearch(
+		final String             queryText,
+		final Collection<String> fields   ,
+		final int                offset   ,
+		final int                pageSize
+	)
+	{
+		return index -> index.search(
+			this.createSearchQuery(index, queryText, fields),
+			offset,
+			pageSize,
+			FACET_FIELDS
+		);
+	}
+
+	/**
+	 * Searches books by title and author like {@link #searchBooks(String, Collection, int, int)},
+	 * but tolerates typos: terms within a small edit distance of the query terms match as well,
+	 * ranked below exact matches.
+	 *
+	 * @param queryText the search query
+	 * @param fields the fields to search, see {@link #FUZZY_SEARCH_FIELDS}, <code>null</code> or empty for all
+	 * @param offset zero or positive amount of results to skip
+	 * @param pageSize positive maximum number of results
+	 * @return the requested page, including the total amount of hits
+	 * @see FuzzyQueryBuilder
+	 */
+	public SearchPage<Book> searchBooksFuzzy(
+		final String             queryText,
+		final Collection<String> fields   ,
+		final int                offset   ,
+		final int                pageSize
+	)
+	{
+		return this.cachedSearch(
+			searchCacheKey("fuzzy", queryText, fields, offset, pageSize),
+			this.fuzzySearch(queryText, fields, offset, pageSize)
+		);
+	}
+
+	private Function<Index<Book>, SearchPage<Book>> fuzzySearch(
+		final String             queryText,
+		final Collection<String> fields   ,
+		final int                offset   ,
+		final int                pageSize
+	)
+	{
+		return index -> index.search(
+			this.createFuzzySearchQuery(index, queryText, fields),
+			offset,
+			pageSize
+		);
+	}
+
+	/**
+	 * Searches books by title and author like {@link #searchBooks(String, Collection, String, int)},
+	 * but tolerates typos: terms within a small edit distance of the query terms match as well,
+	 * ranked below exact matches.
+	 *
+	 * @param queryText the search query
+	 * @param fields the fields to search, see {@link #FUZZY_SEARCH_FIELDS}, <code>null</code> or empty for all
+	 * @param searchAfter the {@link SearchPage#nextCursor()} of the previous page, or <code>null</code> for the first page
+	 * @param pageSize positive maximum number of results
+	 * @return the requested page, including the total amount of hits
+	 * @see FuzzyQueryBuilder
+	 */
+	public SearchPage<Book> searchBooksFuzzy(
+		final String             queryText  ,
+		final Collection<String> fields     ,
+		final String             searchAfter,
+		final int                pageSize
+	)
+	{
+		return this.cachedSearch(
+			searchCacheKey("fuzzy", queryText, fields, searchAfter, pageSize),
+			index -> index.search(
+				this.createFuzzySearchQuery(index, queryText, fields),
+				searchAfter,
+				pageSize
+			)
+		);
+	}
+
+	/**
+	 * Gets a search result from the cache, or searches and caches it.
+	 * Cached results are used as long as the index generation stays the same.
+	 * Results with more than {@link #SEARCH_CACHE_MAX_RESULTS} hits are not cached.
+	 */
+	private SearchPage<Book> cachedSearch(
+		final String                                  cacheKey,
+		final Function<Index<Book>, SearchPage<Book>> search
+	)
+	{
+		final Index<Book>             index      = this.ensureIndex();
+		final SearchResultCache<Book> cache      = this.ensureSearchCache();
+		// read before searching, so a result is never cached with a newer generation than its own
+		final long                    generation = index.generation();
+		final SearchPage<Book>        cached     = this.read(() ->
+			cache.get(cacheKey, generation, this.isbn13KeyToBook::get)
+		);
+		if(cached != null)
+		{
+			return cached;
+		}
+
+		final SearchPage<Book> page = search.apply(index);
+		cache.put(cacheKey, generation, page);
+		return page;
+	}
+
+	/**
+	 * Creates the cache key of a search, which is the same for queries differing only in
+	 * case and whitespace, since the analyzer ignores them as well.
+	 */
+	private static String searchCacheKey(
+		final String             type     ,
+		final String             queryText,
+		final Collection<String> fields   ,
+		final Object             position ,
+		final int                pageSize
+	)
+	{
+		requireNonBlank(queryText, () -> "Query cannot be empty");
+
+		final String normalizedQuery  = queryText.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+		final String normalizedFields = fields == null
+			? ""
+			: fields.stream().distinct().sorted().collect(joining(","))
+		;
+		return type + '\u0000' + normalizedQuery + '\u0000' + normalizedFields
+			+ '\u0000' + position + '\u0000' + pageSize;
+	}
+
+	/**
+	 * Creates the search result cache on demand, the cached results don't depend on the lock state.
+	 */
+	private SearchResultCache<Book> ensureSearchCache()
+	{
+		SearchResultCache<Book> searchCache = this.searchCache;
+		if(searchCache == null)
+		{
+			synchronized(this)
+			{
+				if((searchCache = this.searchCache) == null)
+				{
+					searchCache = this.searchCache = new SearchResultCache<>(
+						SEARCH_CACHE_SIZE,
+						SEARCH_CACHE_MAX_RESULTS,
+						book -> Book.isbn13Key(book.isbn13())
+					);
+				}
+			}
+		}
+		return searchCache;
+	}
+
+	/**
+	 * Drops all cached search results, must be called with a write lock.
+	 */
+	private void clearSearchCache()
+	{
+		final SearchResultCache<Book> searchCache = this.searchCache;
+		if(searchCache != null)
+		{
+			searchCache.clear();
+		}
+	}
+
+	/**
+	 * Gets the usage statistics of the search result cache, which is used by all full text searches.
+	 *
+	 * @return the current statistics
+	 */
+	public SearchCacheMetrics searchCacheMetrics()
+	{
+		return this.ensureSearchCache().metrics();
+	}
+
+	private Query createSearchQuery(
+		final Index<Book>        index    ,
+		final String             queryText,
+		final Collection<String> fields
+	)
+	{
+		final QueryBuilder queryBuilder = index.queryBuilder();
+		return createSearchQuery(
+			queryText,
+			fields,
+			SEARCH_FIELDS,
+			queryBuilder::createBooleanQuery
+		);
+	}
+
+	private Query createFuzzySearchQuery(
+		final Index<Book>        index    ,
+		final String             queryText,
+		final Collection<String> fields
+	)
+	{
+		final FuzzyQueryBuilder fuzzyQueryBuilder = index.fuzzyQueryBuilder();
+		return createSearchQuery(
+			queryText,
+			fields,
+			FUZZY_SEARCH_FIELDS,
+			fuzzyQueryBuilder::createFuzzyQuery
+		);
+	}
+
+	private static Query createSearchQuery(
+		final String                            queryText  ,
+		final Collection<String>                fields     ,
+		final Set<String>                       validFields,
+		final BiFunction<String, String, Query> fieldQuery
+	)
+	{
+		requireNonBlank(queryText, () -> "Query cannot be empty");
+
+		final Collection<String> searchFields = fields == null || fields.isEmpty()
+			? validFields
+			: fields
+		;
+		final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		for(final String field : searchFields)
+		{
+			if(!validFields.contains(field))
+			{
+				throw new IllegalArgumentException("Unknown search field: " + field);
+			}
+
+			// null if the analyzer yields no terms, e.g. only stop words
+			final Query query = fieldQuery.apply(field, queryText);
+			if(query != null)
+			{
+				builder.add(
+					"title".equals(field)
+						? new BoostQuery(query, 2.0f)
+						: query,
+					Occur.SHOULD
+				);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Gets books with a retail price within a range, ordered by price ascending.
+	 *
+	 * @param min the minimum price, inclusive
+	 * @param max the maximum price, inclusive
+	 * @param limit maximum amount of books
+	 * @return a list of books
+	 * @see #booksInPriceRange(MonetaryAmount, MonetaryAmount, Genre, Language, int)
+	 */
+	public List<Book> booksInPriceRange(
+		final MonetaryAmount min  ,
+		final MonetaryAmount max  ,
+		final int            limit
+	)
+	{
+		return this.booksInPriceRange(min, max, null, null, limit);
+	}
+
+	/**
+	 * Gets books with a retail price within a range, ordered by price ascending,
+	 * optionally pre-filtered by genre and language.
+	 * <p>
+	 * Only the price slots within the range are visited, the catalog is not scanned.
+	 *
+	 * @param min the minimum price, inclusive
+	 * @param max the maximum price, inclusive
+	 * @param genre the genre to filter by, or <code>null</code>
+	 * @param language the language to filter by, or <code>null</code>
+	 * @param limit maximum amount of books
+	 * @return a list of books
+	 */
+	public List<Book> booksInPriceRange(
+		final MonetaryAmount min     ,
+		final MonetaryAmount max     ,
+		final Genre          genre   ,
+		final Language       language,
+		final int            limit
+	)
+	{
+		requireZeroOrPositive(limit, () -> "Limit cannot be negative");
+		final long minUnits = minorUnits(min);
+		final long maxUnits = minorUnits(max);
+		if(minUnits > maxUnits)
+		{
+			return new ArrayList<>();
+		}
+
+		return this.read(() ->
+			this.retailPriceToBooks.subMap(minUnits, true, maxUnits, true).values().stream()
+				.flatMap(List::stream)
+				.filter(book -> genre    == null || book.genre()    == genre   )
+				.filter(book -> language == null || book.language() == language)
+				.limit(limit)
+				.collect(toList())
+		);
+	}
+
+	/**
+	 * Gets the amount of books which were added but are not yet searchable,
+	 * because the full text index is fed in the background.
+	 *
+	 * @return the indexing lag in books
+	 * @see #awaitSearchConsistency(long, TimeUnit)
+	 */
+	public long indexingLag()
+	{
+		final Index<Book> index = this.index;
+		return index == null
+			? 0L
+			: index.pendingCount();
+	}
+
+	/**
+	 * Waits until all books, which were added before this call, are searchable.
+	 *
+	 * @param timeout the maximum time to wait
+	 * @param unit the time unit of the timeout argument
+	 * @return <code>true</code> if the search is consistent, <code>false</code> if the timeout elapsed
+	 * @throws InterruptedException if the current thread was interrupted while waiting
+	 * @see #indexingLag()
+	 */
+	public boolean awaitSearchConsistency(
+		final long     timeout,
+		final TimeUnit unit
+	)
+		throws InterruptedException
+	{
+		final Index<Book> index = this.index;
+		return index == null
+			|| index.awaitPending(timeout, unit);
+	}
+
+	/**
+	 * Gets the top autocomplete suggestions for titles, authors and publishers starting with a prefix.
+	 * Every word of a suggestion is matched, case-insensitive and ignoring punctuation.
+	 * <p>
+	 * Suggestions are ranked by weight, which defaults to the amount of books,
+	 * see {@link #updateSuggestionWeights(ToLongFunction)}.
+	 *
+	 * @param prefix the prefix typed by the user
+	 * @param maxResults maximum amount of suggestions
+	 * @return the suggestions, ordered by weight descending
+	 */
+	public List<Suggestion> suggest(
+		final String prefix    ,
+		final int    maxResults
+	)
+	{
+		/*
+		 * The suggester is built with the write lock, since the read lock can't be upgraded.
+		 * It may be dropped again by a weight update in between, hence the loop.
+		 */
+		for(;;)
+		{
+			final List<Suggestion> suggestions = this.read(() ->
+			{
+				final PrefixSuggester suggester = this.suggester;
+				return suggester == null
+					? null
+					: suggester.suggest(prefix, maxResults)
+				;
+			});
+			if(suggestions != null)
+			{
+				return suggestions;
+			}
+			this.write(this::ensureSuggester);
+		}
+	}
+
+	/**
+	 * Replaces the weight of the autocomplete suggestions, e.g. with the units sold of every book.
+	 * Authors and publishers are weighted with the sum of their books' weights.
+	 * <p>
+	 * The weight function is not persisted, the default weight is 1 per book.
+	 *
+	 * @param bookWeight the weight function, or <code>null</code> for the default weight
+	 * @see #suggest(String, int)
+	 */
+	public void updateSuggestionWeights(final ToLongFunction<Book> bookWeight)
+	{
+		this.write(() ->
+		{
+			this.suggestionWeight = bookWeight;
+			this.suggester        = null;
+		});
+	}
+
+	/**
+	 * Builds the autocomplete index if it doesn't exist yet. Must be called with a write lock.
+	 */
+	private void ensureSuggester()
+	{
+		if(this.suggester == null)
+		{
+			final PrefixSuggester suggester = new PrefixSuggester();
+			this.isbn13KeyToBook.forEach(book -> this.addToSuggester(suggester, book));
+			this.suggester = suggester;
+		}
+	}
+
+	/**
+	 * Adds a book to the autocomplete index, if it is already created. Must be called with a write lock.
+	 */
+	private void addToSuggester(final Book book)
+	{
+		final PrefixSuggester suggester = this.suggester;
+		if(suggester != null)
+		{
+			this.addToSuggester(suggester, book);
+		}
+	}
+
+	private void addToSuggester(
+		final PrefixSuggester suggester,
+		final Book            book
+	)
+	{
+		final ToLongFunction<Book> bookWeight = this.suggestionWeight;
+		final long                 weight     = bookWeight == null
+			? 1L
+			: bookWeight.applyAsLong(book);
+		suggester.add(book.title()           , Suggestion.Type.TITLE    , weight);
+		suggester.add(book.author().name()   , Suggestion.Type.AUTHOR   , weight);
+		suggester.add(book.publisher().name(), Suggestion.Type.PUBLISHER, weight);
 	}
 
 	/**
@@ -542,7 +1648,10 @@ public class Books extends LockScope
 	}
 
 	/**
-	 * Lazy initializes the full text search index.
+	 * Lazy initializes the full text search index, which is done by searches only, never by writes.
+	 * If the initialization is interrupted, the index is not published and the next call tries again.
+	 *
+	 * @throws CancellationException if the current thread was interrupted while the index was rebuilt
 	 */
 	private Index<Book> ensureIndex()
 	{
@@ -558,7 +1667,8 @@ public class Books extends LockScope
 			{
 				if((index = this.index) == null)
 				{
-					index = this.index = this.createIndex();
+					// published by createIndex
+					index = this.createIndex();
 				}
 			}
 		}
@@ -571,29 +1681,180 @@ public class Books extends LockScope
 	private Index<Book> createIndex()
 	{
 		final DocumentPopulator<Book> documentPopulator = (document, book) -> {
-			document.add(new StringField("isbn13", book.isbn13(), Store.YES));
-			document.add(new TextField("title", book.title(), Store.YES));
-			document.add(new TextField("author", book.author().name(), Store.YES));
-			document.add(new TextField("genre", book.genre().name(), Store.YES));
-			document.add(new TextField("publisher", book.publisher().name(), Store.YES));
+			document.add(new StringField("isbn13", book.isbn13(), Store.NO));
+			document.add(new TextField("title", book.title(), Store.NO));
+			document.add(new TextField("author", book.author().name(), Store.NO));
+			document.add(new TextField("genre", book.genre().name(), Store.NO));
+			document.add(new TextField("publisher", book.publisher().name(), Store.NO));
+			// doc values for the facet counts
+			document.add(new SortedSetDocValuesField("genre", new BytesRef(book.genre().name())));
+			document.add(new SortedSetDocValuesField("publisher", new BytesRef(book.publisher().name())));
+			document.add(new SortedSetDocValuesField("language", new BytesRef(book.language().name())));
 		};
 
-		final EntityMatcher<Book> entityMatcher = document ->
-			this.isbn13ToBook.get(document.get("isbn13"))
+		/*
+		 * Hits are resolved by their numeric ISBN key through the open addressing arrays of isbn13KeyToBook,
+		 * under the read lock of this instance, without any stored field lookups.
+		 */
+		final EntityResolver<Book> entityResolver = new EntityResolver<Book>()
+		{
+			@Override
+			public long key(final Book book)
+			{
+				return Book.isbn13Key(book.isbn13());
+			}
+
+			@Override
+			public List<Book> resolve(final long[] keys)
+			{
+				return Books.this.read(() ->
+				{
+					final List<Book> books = new ArrayList<>(keys.length);
+					for(final long key : keys)
+					{
+						final Book book = Books.this.isbn13KeyToBook.get(key);
+						if(book != null)
+						{
+							books.add(book);
+						}
+					}
+					return books;
+				});
+			}
+		};
+
+		final BookStoreDemo      demo          = BookStoreDemo.getInstance();
+		final IndexConfiguration configuration = demo != null
+			? demo.indexConfiguration()
+			: IndexConfiguration.Default()
 		;
 
 		final Index<Book> index = new Index<>(
 			Book.class,
 			documentPopulator,
-			entityMatcher
+			entityResolver,
+			configuration,
+			INDEX_DOCUMENT_VERSION
 		);
 
-		if(index.size() == 0 && this.bookCount() > 0)
+		try
 		{
-			index.addAll(this.isbn13ToBook.values());
+			this.read(() ->
+			{
+				// documents of an older layout are dropped when the index is opened, it is rebuilt then
+				final int  bookCount = this.isbn13KeyToBook.size();
+				final long checksum  = this.isbn13KeyToBook.keyChecksum(Index::fingerprint);
+				if(!index.isConsistentWith(bookCount, checksum))
+				{
+					try
+					{
+						this.reconcileIndex(index);
+						index.markConsistent(bookCount, checksum);
+					}
+					catch(final InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						throw new CancellationException("Initialization of the book index was interrupted");
+					}
+				}
+				// published under the read lock, so writes are either part of the checked data or feed the index
+				this.index = index;
+			});
+		}
+		catch(final RuntimeException e)
+		{
+			// the partially written index is not published, the next access initializes it again
+			index.closeAfterFailure(e);
+			throw e;
 		}
 
 		return index;
 	}
 
+	/**
+	 * Brings the index in line with the catalog, by removing documents of unknown ISBNs
+	 * and adding the missing books, instead of rebuilding the whole index.
+	 * An empty index is filled by a parallel {@link Index#rebuild(java.util.Collection, Index.ProgressListener) rebuild}.
+	 */
+	private void reconcileIndex(final Index<Book> index) throws InterruptedException
+	{
+		final Set<String> indexedIsbns = index.terms("isbn13");
+		final boolean     emptyIndex   = indexedIsbns.isEmpty();
+		final List<Book>  missingBooks = new ArrayList<>();
+		this.isbn13KeyToBook.forEach(book ->
+		{
+			if(!indexedIsbns.remove(book.isbn13()))
+			{
+				missingBooks.add(book);
+			}
+		});
+
+		// what's left are ISBNs which are not in the catalog anymore
+		if(!indexedIsbns.isEmpty())
+		{
+			index.remove(new TermInSetQuery(
+				"isbn13",
+				indexedIsbns.stream().map(BytesRef::new).collect(toList())
+			));
+		}
+		if(emptyIndex)
+		{
+			index.rebuild(missingBooks, null);
+		}
+		else if(!missingBooks.isEmpty())
+		{
+			index.addAll(missingBooks);
+		}
+	}
+
+	/**
+	 * Opens the full text search index, which reconciles it with the catalog if necessary,
+	 * and searches for a sample of titles with all query types.
+	 * This faults in the terms, postings and doc values of the index files,
+	 * so that the first searches of users don't have to wait for the disk.
+	 * The searches bypass the search result cache, which neither holds their results
+	 * nor counts them in its {@link #searchCacheMetrics() metrics}.
+	 */
+	public void warmUpIndex()
+	{
+		final Index<Book> index = this.ensureIndex();
+
+		final List<String> titles = this.read(() ->
+			this.isbn13KeyToBook.stream()
+				.limit(WARM_UP_QUERIES)
+				.map(Book::title)
+				.collect(toList())
+		);
+		for(final String title : titles)
+		{
+			titleSearch(title).apply(index);
+			this.facetSearch(title, null, 0, 10).apply(index);
+			this.fuzzySearch(title, null, 0, 10).apply(index);
+		}
+	}
+
+	/**
+	 * Closes the full text search index, if it was initialized, committing all pending changes.
+	 * It is lazily reopened on the next access.
+	 */
+	public void closeIndex()
+	{
+		synchronized(this)
+		{
+			final Index<Book> index = this.index;
+			if(index != null)
+			{
+				this.index = null;
+				try
+				{
+					index.close();
+				}
+				catch(final IOException e)
+				{
+					throw new IORuntimeException(e);
+				}
+			}
+		}
+	}
+
 }
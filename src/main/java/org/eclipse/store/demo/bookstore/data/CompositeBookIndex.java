@@ -0,0 +1,144 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Secondary index of {@link Book}s over a combination of {@link BookAttribute}s.
+ * <p>
+ * Only the attributes are persisted. The entries are keyed by the attribute entities, which don't override
+ * {@link Object#hashCode()}, so they are transient and built from the books on first use after a load.
+ * <p>
+ * Note that this class doesn't need to handle concurrency in any way,
+ * since it is only used by the {@link Books} implementation which handles thread safety.
+ *
+ * @see Books#createCompositeIndex(Collection)
+ */
+class CompositeBookIndex
+{
+	private final              BookAttribute[]              attributes;
+	private transient volatile Map<List<Named>, List<Book>> keyToBooks;
+
+	CompositeBookIndex(final Set<BookAttribute> attributes)
+	{
+		super();
+
+		/*
+		 * EnumSet iterates in declaration order, so equal sets produce equal keys.
+		 */
+		this.attributes = EnumSet.copyOf(attributes).toArray(new BookAttribute[attributes.size()]);
+	}
+
+	/**
+	 * @param attributes the attributes to test
+	 * @return <code>true</code> if this index is made of exactly the given attributes
+	 */
+	boolean indexes(final Set<BookAttribute> attributes)
+	{
+		if(attributes.size() != this.attributes.length)
+		{
+			return false;
+		}
+		for(final BookAttribute attribute : this.attributes)
+		{
+			if(!attributes.contains(attribute))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param criteria the query criteria
+	 * @return <code>true</code> if all attributes of this index are part of the criteria
+	 */
+	boolean isCoveredBy(final Map<BookAttribute, ? extends Named> criteria)
+	{
+		for(final BookAttribute attribute : this.attributes)
+		{
+			if(!criteria.containsKey(attribute))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a book to this index, if its entries are already built.
+	 * Must be called with a write lock.
+	 *
+	 * @param book the book to add
+	 */
+	void add(final Book book)
+	{
+		final Map<List<Named>, List<Book>> keyToBooks = this.keyToBooks;
+		if(keyToBooks != null)
+		{
+			this.add(keyToBooks, book);
+		}
+	}
+
+	/**
+	 * Must be called with at least a read lock.
+	 *
+	 * @param criteria the query criteria, which must cover this index
+	 * @param books all books, to build the entries from if necessary
+	 * @return the matching books or <code>null</code>
+	 * @see #isCoveredBy(Map)
+	 */
+	List<Book> get(
+		final Map<BookAttribute, ? extends Named> criteria,
+		final IsbnBookMap                         books
+	)
+	{
+		Map<List<Named>, List<Book>> keyToBooks = this.keyToBooks;
+		if(keyToBooks == null)
+		{
+			final Map<List<Named>, List<Book>> map = keyToBooks = new HashMap<>();
+			books.forEach(book -> this.add(map, book));
+			this.keyToBooks = keyToBooks;
+		}
+
+		final List<Named> key = new ArrayList<>(this.attributes.length);
+		for(final BookAttribute attribute : this.attributes)
+		{
+			key.add(criteria.get(attribute));
+		}
+		return keyToBooks.get(key);
+	}
+
+	private void add(
+		final Map<List<Named>, List<Book>> keyToBooks,
+		final Book                         book
+	)
+	{
+		final List<Named> key = new ArrayList<>(this.attributes.length);
+		for(final BookAttribute attribute : this.attributes)
+		{
+			key.add(attribute.of(book));
+		}
+		keyToBooks.computeIfAbsent(key, k -> new ArrayList<>()).add(book);
+	}
+
+}
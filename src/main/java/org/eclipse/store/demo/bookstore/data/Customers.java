@@ -14,18 +14,31 @@ package org.eclipse.store.demo.bookstore.data;
  * #L%
  */
 
+import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requirePositive;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.Query;
 import org.eclipse.serializer.concurrency.LockScope;
+import org.eclipse.serializer.exceptions.IORuntimeException;
 import org.eclipse.serializer.persistence.types.PersistenceStoring;
 import org.eclipse.store.demo.bookstore.BookStoreDemo;
+import org.eclipse.store.demo.bookstore.data.Index.DocumentPopulator;
+import org.eclipse.store.demo.bookstore.data.Index.EntityResolver;
 import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
 
 /**
@@ -44,6 +57,14 @@ public class Customers extends LockScope
 	 * Map with {@link Customer#customerId()} as key
 	 */
 	private final Map<Integer, Customer> customers = new HashMap<>();
+	/**
+	 * Full text index of names and addresses, used by {@link #searchByName(String, int)}
+	 * and {@link #searchByAddress(String, int)}.
+	 */
+	/*
+	 * Transient means it is not persisted by EclipseStore, but created on demand.
+	 */
+	private transient volatile Index<Customer> index;
 
 	public Customers()
 	{
@@ -64,6 +85,9 @@ public class Customers extends LockScope
 
 	/**
 	 * Adds a new customer and stores it with the given persister.
+	 * A customer with the same id is replaced.
+	 * <p>
+	 * The customer is indexed for full text search in the background.
 	 *
 	 * @param customer the new customer
 	 * @param persister the persister to store it with
@@ -75,8 +99,7 @@ public class Customers extends LockScope
 	)
 	{
 		this.write(() -> {
-			this.customers.put(customer.customerId(), customer);
-			persister.store(this.customers);
+			this.putAndIndex(List.of(customer), persister);
 		});
 	}
 
@@ -94,6 +117,9 @@ public class Customers extends LockScope
 
 	/**
 	 * Adds a range of new customers and stores it with the given persister.
+	 * Customers with the same id are replaced.
+	 * <p>
+	 * The customers are indexed for full text search in the background.
 	 *
 	 * @param customers the new customers
 	 * @param persister the persister to store them with
@@ -105,15 +131,71 @@ public class Customers extends LockScope
 	)
 	{
 		this.write(() -> {
-			this.customers.putAll(
-				customers.stream().collect(
-					Collectors.toMap(Customer::customerId, Function.identity())
-				)
-			);
-			persister.store(this.customers);
+			this.putAndIndex(customers, persister);
 		});
 	}
 
+	/**
+	 * Must be called with a write lock.
+	 */
+	private void putAndIndex(
+		final Collection<? extends Customer> customers,
+		final PersistenceStoring             persister
+	)
+	{
+		final List<Customer> replacedCustomers = new ArrayList<>(customers.size());
+		for(final Customer customer : customers)
+		{
+			replacedCustomers.add(this.customers.put(customer.customerId(), customer));
+		}
+		persister.store(this.customers);
+
+		/*
+		 * The object graph is committed at this point,
+		 * an open full text index is fed afterwards by a background thread,
+		 * which executes the additions and updates in the given order.
+		 * A closed one is checked against the customers when it is opened, see #fingerprint(Customer).
+		 */
+		final Index<Customer> index = this.index;
+		if(index == null)
+		{
+			return;
+		}
+		final List<Customer> added = new ArrayList<>();
+		int i = 0;
+		for(final Customer customer : customers)
+		{
+			final Customer replaced = replacedCustomers.get(i++);
+			if(replaced == null)
+			{
+				added.add(customer);
+			}
+			else
+			{
+				index.addAllInBackground(added);
+				added.clear();
+				index.updateInBackground(idTerm(replaced.customerId()), replaced, customer);
+			}
+		}
+		index.addAllInBackground(added);
+	}
+
+	private static Term idTerm(final int customerId)
+	{
+		return new Term("id", Integer.toString(customerId));
+	}
+
+	/**
+	 * Includes the indexed fields besides the id, so that customers which were replaced
+	 * while the index was closed are detected when it is opened.
+	 */
+	private static long fingerprint(final Customer customer)
+	{
+		return Index.fingerprint(
+			31L * customer.customerId() + Objects.hash(customer.name(), customer.address().fullText())
+		);
+	}
+
 	/**
 	 * Gets the total amount of all customers.
 	 *
@@ -168,4 +250,196 @@ public class Customers extends LockScope
 		);
 	}
 
+	/**
+	 * Searches customers by name. All words of the query have to match.
+	 *
+	 * @param queryText the search query
+	 * @param maxResults maximum number of results
+	 * @return a list of customers matching the query, ordered by relevance, or an empty list
+	 */
+	public List<Customer> searchByName(
+		final String queryText ,
+		final int    maxResults
+	)
+	{
+		return this.search("name", queryText, maxResults);
+	}
+
+	/**
+	 * Searches customers by address, including zip code, city, state and country.
+	 * All words of the query have to match.
+	 *
+	 * @param queryText the search query
+	 * @param maxResults maximum number of results
+	 * @return a list of customers matching the query, ordered by relevance, or an empty list
+	 */
+	public List<Customer> searchByAddress(
+		final String queryText ,
+		final int    maxResults
+	)
+	{
+		return this.search("address", queryText, maxResults);
+	}
+
+	private List<Customer> search(
+		final String field     ,
+		final String queryText ,
+		final int    maxResults
+	)
+	{
+		requirePositive(maxResults, () -> "Max results must be greater than zero");
+
+		final Index<Customer> index = this.ensureIndex();
+		final Query           query = index.queryBuilder().createBooleanQuery(field, queryText, Occur.MUST);
+		// null if the analyzer yields no terms
+		return query == null
+			? new ArrayList<>()
+			: index.search(query, maxResults);
+	}
+
+	/**
+	 * Lazy initializes the full text search index, which is done by searches only, never by writes.
+	 * If the initialization is interrupted, the index is not published and the next call tries again.
+	 *
+	 * @throws CancellationException if the current thread was interrupted while the index was rebuilt
+	 */
+	private Index<Customer> ensureIndex()
+	{
+		/*
+		 * Double-checked locking to reduce the overhead of acquiring a lock
+		 * by testing the locking criterion.
+		 * The field (this.index) has to be volatile.
+		 */
+		Index<Customer> index = this.index;
+		if(index == null)
+		{
+			synchronized(this)
+			{
+				if((index = this.index) == null)
+				{
+					// published by createIndex
+					index = this.createIndex();
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Creates the Lucene index used for full text search,
+	 * and rebuilds it if it doesn't match the stored customers.
+	 */
+	private Index<Customer> createIndex()
+	{
+		final DocumentPopulator<Customer> documentPopulator = (document, customer) -> {
+			document.add(new StringField("id", Integer.toString(customer.customerId()), Store.NO));
+			document.add(new TextField("name", customer.name(), Store.NO));
+			document.add(new TextField("address", customer.address().fullText(), Store.NO));
+		};
+
+		/*
+		 * Hits are resolved by their customer id under the read lock of this instance,
+		 * without any stored field lookups.
+		 */
+		final EntityResolver<Customer> entityResolver = new EntityResolver<Customer>()
+		{
+			@Override
+			public long key(final Customer customer)
+			{
+				return customer.customerId();
+			}
+
+			@Override
+			public List<Customer> resolve(final long[] keys)
+			{
+				return Customers.this.read(() ->
+				{
+					final List<Customer> customers = new ArrayList<>(keys.length);
+					for(final long key : keys)
+					{
+						final Customer customer = Customers.this.customers.get((int)key);
+						if(customer != null)
+						{
+							customers.add(customer);
+						}
+					}
+					return customers;
+				});
+			}
+		};
+
+		final BookStoreDemo      demo          = BookStoreDemo.getInstance();
+		final IndexConfiguration configuration = demo != null
+			? demo.indexConfiguration()
+			: IndexConfiguration.Default()
+		;
+
+		final Index<Customer> index = new Index<>(
+			Customer.class,
+			documentPopulator,
+			entityResolver,
+			Customers::fingerprint,
+			configuration,
+			null
+		);
+
+		try
+		{
+			this.read(() ->
+			{
+				final int  customerCount = this.customers.size();
+				final long checksum      = this.customers.values().stream()
+					.mapToLong(Customers::fingerprint)
+					.sum();
+				if(!index.isConsistentWith(customerCount, checksum))
+				{
+					try
+					{
+						index.rebuild(this.customers.values(), null);
+						index.markConsistent(customerCount, checksum);
+					}
+					catch(final InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						throw new CancellationException("Initialization of the customer index was interrupted");
+					}
+				}
+				// published under the read lock, so writes are either part of the checked data or feed the index
+				this.index = index;
+			});
+		}
+		catch(final RuntimeException e)
+		{
+			// the partially written index is not published, the next access initializes it again
+			index.closeAfterFailure(e);
+			throw e;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Closes the full text search index, if it was initialized, committing all pending changes.
+	 * It is lazily reopened on the next access.
+	 */
+	public void closeIndex()
+	{
+		synchronized(this)
+		{
+			final Index<Customer> index = this.index;
+			if(index != null)
+			{
+				this.index = null;
+				try
+				{
+					index.close();
+				}
+				catch(final IOException e)
+				{
+					throw new IORuntimeException(e);
+				}
+			}
+		}
+	}
+
 }
@@ -15,6 +15,11 @@ package org.eclipse.store.demo.bookstore.data;
  * #L%
  */
 
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.serializer.persistence.types.PersistenceStoring;
+import org.eclipse.serializer.reference.Lazy;
 import org.eclipse.store.demo.bookstore.BookStoreDemo;
 import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
 
@@ -39,6 +44,10 @@ public class Data
 	private final Shops     shops     = new Shops    ();
 	private final Customers customers = new Customers();
 	private final Purchases purchases = new Purchases();
+	/*
+	 * Not final, since it is lazily created for databases which were created without it.
+	 */
+	private Map<String, Map<String, Lazy<byte[]>>> indexFiles;
 
 	public Data()
 	{
@@ -81,6 +90,43 @@ public class Data
 		return this.purchases;
 	}
 
+	/**
+	 * Migrates data of older versions and wires the transient parts of the object graph,
+	 * which are not restored by EclipseStore.
+	 * This method is used exclusively by the {@link BookStoreDemo}, once after the data was loaded or created.
+	 *
+	 * @param persister the persister to store migrated data with
+	 */
+	public void initialize(final PersistenceStoring persister)
+	{
+		this.books.migrate(persister);
+		this.shops.bind();
+	}
+
+	/**
+	 * Gets the persisted files of a full text index, which is stored inside the storage.
+	 * This method is used exclusively by {@link IndexDirectoryProvider#Storage(EmbeddedStorageManager, Data)}.
+	 */
+	synchronized Map<String, Lazy<byte[]>> indexFiles(
+		final String             indexName,
+		final PersistenceStoring persister
+	)
+	{
+		if(this.indexFiles == null)
+		{
+			this.indexFiles = new HashMap<>();
+			persister.store(this);
+		}
+
+		Map<String, Lazy<byte[]>> files = this.indexFiles.get(indexName);
+		if(files == null)
+		{
+			this.indexFiles.put(indexName, files = new HashMap<>());
+			persister.store(this.indexFiles);
+		}
+		return files;
+	}
+
 	/**
 	 * This method is used exclusively by the {@link BookStoreDemo}.
 	 */
@@ -0,0 +1,230 @@
+
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.AutomatonQuery;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.LevenshteinAutomata;
+import org.eclipse.serializer.exceptions.IORuntimeException;
+
+/**
+ * Creates typo tolerant queries, which match terms within a small edit distance of the query terms.
+ * <p>
+ * The matching is done like {@link org.apache.lucene.search.FuzzyQuery}, but the compiled Levenshtein
+ * automata of recently used terms are cached and reused by subsequent queries, since compiling them
+ * is the most expensive part of a fuzzy search with a short query.
+ * The amount of index terms a query term expands to is capped, see {@link #MAX_EXPANSIONS}.
+ * <p>
+ * This type is thread safe.
+ *
+ * @see Index#fuzzyQueryBuilder()
+ */
+public class FuzzyQueryBuilder
+{
+	/**
+	 * Maximum amount of index terms a single query term is expanded to.
+	 * The most frequent terms within the edit distance are used.
+	 */
+	public final static int     MAX_EXPANSIONS      = 50;
+
+	/**
+	 * Amount of leading characters which have to match exactly.
+	 * Typos in the first character are rare, and it narrows the terms to visit considerably.
+	 */
+	public final static int     PREFIX_LENGTH       = 1;
+
+	/**
+	 * Maximum amount of cached automata, the least recently used are evicted.
+	 */
+	private final static int    MAX_CACHED_AUTOMATA = 1024;
+
+	/**
+	 * Boost of exact matches, to rank them above corrected ones.
+	 */
+	private final static float  EXACT_MATCH_BOOST   = 2.0f;
+
+	private final Analyzer         analyzer;
+	private final Map<Term, Query> automatonQueries = new LinkedHashMap<>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Term, Query> eldest)
+		{
+			return this.size() > MAX_CACHED_AUTOMATA;
+		}
+	};
+
+	/**
+	 * @param analyzer the analyzer to split the query text with, must be the same as the index's
+	 */
+	public FuzzyQueryBuilder(final Analyzer analyzer)
+	{
+		super();
+		this.analyzer = analyzer;
+	}
+
+	/**
+	 * Creates a query which matches documents containing any of the query's terms in the given field,
+	 * or terms within the allowed edit distance, see {@link #maxEdits(String)}.
+	 * Exact matches are ranked higher.
+	 *
+	 * @param field the field to search
+	 * @param queryText the text to analyze
+	 * @return the query, or <code>null</code> if the analyzer yields no terms, e.g. only stop words
+	 */
+	public Query createFuzzyQuery(
+		final String field    ,
+		final String queryText
+	)
+	{
+		final List<String> terms = this.analyze(field, queryText);
+		if(terms.isEmpty())
+		{
+			return null;
+		}
+		if(terms.size() == 1)
+		{
+			return this.createTermQuery(field, terms.get(0));
+		}
+
+		final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		for(final String term : terms)
+		{
+			builder.add(this.createTermQuery(field, term), Occur.SHOULD);
+		}
+		return builder.build();
+	}
+
+	private Query createTermQuery(
+		final String field,
+		final String text
+	)
+	{
+		final Term      term      = new Term(field, text);
+		final TermQuery termQuery = new TermQuery(term);
+		if(maxEdits(text) == 0)
+		{
+			return termQuery;
+		}
+
+		return new BooleanQuery.Builder()
+			.add(new BoostQuery(termQuery, EXACT_MATCH_BOOST), Occur.SHOULD)
+			.add(this.automatonQuery(term)                   , Occur.SHOULD)
+			.build()
+		;
+	}
+
+	/**
+	 * Gets the cached automaton query of a term, or compiles a new one.
+	 * Queries are immutable, so the same instance can be used by concurrent searches.
+	 */
+	private Query automatonQuery(final Term term)
+	{
+		synchronized(this.automatonQueries)
+		{
+			final Query query = this.automatonQueries.get(term);
+			if(query != null)
+			{
+				return query;
+			}
+		}
+
+		// compiled outside of the lock, a concurrent compilation of the same term is harmless
+		final Query query = createAutomatonQuery(term);
+		synchronized(this.automatonQueries)
+		{
+			final Query existing = this.automatonQueries.putIfAbsent(term, query);
+			return existing != null
+				? existing
+				: query;
+		}
+	}
+
+	private static Query createAutomatonQuery(final Term term)
+	{
+		final String    text      = term.text();
+		final int       prefixEnd = text.offsetByCodePoints(
+			0,
+			Math.min(PREFIX_LENGTH, text.codePointCount(0, text.length()))
+		);
+		final String    prefix    = text.substring(0, prefixEnd);
+		final Automaton automaton = new LevenshteinAutomata(text.substring(prefixEnd), true)
+			.toAutomaton(maxEdits(text), prefix);
+		return new AutomatonQuery(
+			term,
+			automaton,
+			false,
+			new MultiTermQuery.TopTermsBlendedFreqScoringRewrite(MAX_EXPANSIONS)
+		);
+	}
+
+	/**
+	 * Gets the allowed amount of edits of a term, depending on its length:
+	 * none up to two characters, one up to five characters, two otherwise.
+	 *
+	 * @param term the query term
+	 * @return the maximum edit distance
+	 */
+	public static int maxEdits(final String term)
+	{
+		final int length = term.codePointCount(0, term.length());
+		return length <= 2
+			? 0
+			: length <= 5
+				? 1
+				: 2
+		;
+	}
+
+	private List<String> analyze(
+		final String field    ,
+		final String queryText
+	)
+	{
+		final List<String> terms = new ArrayList<>();
+		try(final TokenStream stream = this.analyzer.tokenStream(field, queryText))
+		{
+			final CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while(stream.incrementToken())
+			{
+				terms.add(termAttribute.toString());
+			}
+			stream.end();
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+		return terms;
+	}
+
+}
@@ -15,39 +15,93 @@ package org.eclipse.store.demo.bookstore.data;
  * #L%
  */
 
+import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requirePositive;
+import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requireZeroOrPositive;
+
 import java.io.Closeable;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.LiveIndexWriterConfig;
+import org.apache.lucene.index.MultiBits;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MultiCollectorManager;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorable;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.search.TopScoreDocCollectorManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.QueryBuilder;
 import org.eclipse.serializer.exceptions.IORuntimeException;
+import org.rapidpm.dependencies.core.logger.HasLogger;
 
 /**
  * Lucene based full text search index for Java objects.
  * <p>
+ * The index works near-real-time: writes are buffered by the {@link IndexWriter} and return without fsync.
+ * Searchers are provided by a {@link SearcherManager}, which is refreshed in the background,
+ * and changes are committed in batches, see {@link IndexConfiguration}.
+ * <p>
  * All operations on this type are thread safe.
+ * Only write operations are serialized, searches run concurrently on leased searchers without locking.
  *
  * @param <T> the object type
  * @see Books.Default#searchByTitle(String)
  */
-public class Index<T> implements Closeable
+public class Index<T> implements Closeable, HasLogger
 {
 	/**
 	 * External handler to populate index documents based on Java objects
@@ -68,18 +122,123 @@ public class Index<T> implements Closeable
 	{
 		// simple typing interface
 	}
+
+	/**
+	 * External handler which computes a fingerprint of a Java object,
+	 * used to verify the consistency of the index with its source data.
+	 *
+	 * @param <T> the object type
+	 * @see Index#isConsistentWith(long, long)
+	 */
+	public static interface EntityFingerprint<T> extends ToLongFunction<T>
+	{
+		// simple typing interface
+	}
+
+	/**
+	 * External handler which identifies Java objects by a numeric key.
+	 * The key is stored as doc value of every document, and hits are resolved by it,
+	 * without loading any stored fields.
+	 * The key is also used as base of the {@link EntityFingerprint}.
+	 *
+	 * @param <T> the object type
+	 */
+	public static interface EntityResolver<T>
+	{
+		/**
+		 * @param entity the Java object
+		 * @return the unique key of the entity
+		 */
+		public long key(T entity);
+
+		/**
+		 * Resolves a batch of keys, in one step, e.g. under a single lock.
+		 *
+		 * @param keys the keys of the hits, in order of relevance
+		 * @return the matching Java objects in the same order, without the ones which don't exist anymore
+		 */
+		public List<T> resolve(long[] keys);
+	}
+
+	/**
+	 * Listener which is notified about the progress of a rebuild.
+	 * It is called by the indexing threads, concurrently.
+	 *
+	 * @see Index#rebuild(Collection, ProgressListener)
+	 */
+	@FunctionalInterface
+	public static interface ProgressListener
+	{
+		/**
+		 * @param done the amount of entities indexed so far
+		 * @param total the amount of entities to index
+		 */
+		public void progress(long done, long total);
+	}
 	
 	
+	/**
+	 * Amount of entities which are indexed at once by the background indexer.
+	 */
+	private final static int           BACKGROUND_BATCH_SIZE = 1000;
+
+	/**
+	 * Commit user data keys of the consistency markers.
+	 */
+	private final static String        COMMIT_DATA_COUNT     = "entityCount"   ;
+	private final static String        COMMIT_DATA_CHECKSUM  = "entityChecksum";
+	private final static String        COMMIT_DATA_LAYOUT    = "indexLayout"   ;
+
+	/**
+	 * Version of the internal document layout, documents of other layouts are dropped.
+	 * It is combined with the document version of the owner, see
+	 * {@link #Index(Class, DocumentPopulator, EntityResolver, IndexConfiguration, String)}.
+	 */
+	private final static String        LAYOUT_VERSION        = "2";
+
+	/**
+	 * Amount of entities which are indexed at once by a rebuild thread.
+	 */
+	private final static int           REBUILD_CHUNK_SIZE    = 1000;
+
+	/**
+	 * Segments per tier during rebuilds, to merge less while the index is populated.
+	 */
+	private final static double        REBUILD_SEGMENTS_PER_TIER = 50.0;
+
+	/**
+	 * Doc values field of the {@link EntityResolver} keys.
+	 */
+	private final static String        KEY_FIELD             = "entityKey";
+
 	private final Class<T>             entityType       ;
 	private final DocumentPopulator<T> documentPopulator;
 	private final EntityMatcher<T>     entityMatcher    ;
-	private MMapDirectory              directory        ;
+	private final EntityResolver<T>    entityResolver   ;
+	private final EntityFingerprint<T> entityFingerprint;
+	private final IndexConfiguration   configuration    ;
+	private final String               layoutVersion    ;
+	private final AtomicLong           pendingCount     = new AtomicLong();
+	private final AtomicLong           uncommittedCount = new AtomicLong();
+	/*
+	 * Guards the pause flag, refreshes run concurrently under the read lock.
+	 */
+	private final ReadWriteLock        refreshLock      = new ReentrantReadWriteLock();
+	private boolean                    refreshPaused    ;
+	private volatile ExecutorService   backgroundIndexer;
+	private ScheduledExecutorService   scheduler        ;
+	private Directory                  directory        ;
 	private IndexWriter                writer           ;
-	private DirectoryReader            reader           ;
-	private IndexSearcher              searcher         ;
+	private TieredMergePolicy          mergePolicy      ;
+	private volatile SearcherManager   searcherManager  ;
+	private volatile QueryBuilder      queryBuilder     ;
+	private volatile FuzzyQueryBuilder fuzzyQueryBuilder;
+	private long                       indexedCount     ;
+	private long                       indexedChecksum  ;
+	private final Map<String, String>  userData         = new HashMap<>();
 
 	/**
-	 * Constructor to create a new {@link Index}.
+	 * Constructor to create a new {@link Index} with the {@link IndexConfiguration#Default()} configuration.
 	 *
 	 * @param <T> the object type
 	 * @param entityType not <code>null</code>
@@ -91,17 +250,132 @@ public class Index<T> implements Closeable
 		final DocumentPopulator<T> documentPopulator,
 		final EntityMatcher<T>     entityMatcher
 	)
+	{
+		this(entityType, documentPopulator, entityMatcher, null, IndexConfiguration.Default());
+	}
+
+	/**
+	 * Constructor to create a new {@link Index}.
+	 *
+	 * @param <T> the object type
+	 * @param entityType not <code>null</code>
+	 * @param documentPopulator not <code>null</code>
+	 * @param entityMatcher not <code>null</code>
+	 * @param entityFingerprint may be <code>null</code>, in which case no consistency markers are recorded
+	 * @param configuration not <code>null</code>
+	 */
+	public Index(
+		final Class<T>             entityType       ,
+		final DocumentPopulator<T> documentPopulator,
+		final EntityMatcher<T>     entityMatcher    ,
+		final EntityFingerprint<T> entityFingerprint,
+		final IndexConfiguration   configuration
+	)
 	{
 		super();
 		this.entityType        = Objects.requireNonNull(entityType, () -> "EntityType cannot be null");
 		this.documentPopulator = Objects.requireNonNull(documentPopulator, () -> "DocumentPopulator cannot be null");
 		this.entityMatcher     = Objects.requireNonNull(entityMatcher, () -> "EntityMatcher cannot be null");
+		this.entityResolver    = null;
+		this.entityFingerprint = entityFingerprint;
+		this.configuration     = Objects.requireNonNull(configuration, () -> "Configuration cannot be null");
+		this.layoutVersion     = LAYOUT_VERSION;
+	}
+
+	/**
+	 * Constructor to create a new {@link Index}, which resolves hits by numeric keys.
+	 * Consistency markers are recorded based on the keys.
+	 *
+	 * @param <T> the object type
+	 * @param entityType not <code>null</code>
+	 * @param documentPopulator not <code>null</code>
+	 * @param entityResolver not <code>null</code>
+	 * @param configuration not <code>null</code>
+	 */
+	public Index(
+		final Class<T>             entityType       ,
+		final DocumentPopulator<T> documentPopulator,
+		final EntityResolver<T>    entityResolver   ,
+		final IndexConfiguration   configuration
+	)
+	{
+		this(entityType, documentPopulator, entityResolver, configuration, null);
+	}
+
+	/**
+	 * Constructor to create a new {@link Index}, which resolves hits by numeric keys.
+	 * Consistency markers are recorded based on the keys.
+	 * <p>
+	 * The document version is stored with the commits of this index.
+	 * All documents of an index, which was written with another version, are dropped when it is opened,
+	 * so that the owner rebuilds it.
+	 *
+	 * @param <T> the object type
+	 * @param entityType not <code>null</code>
+	 * @param documentPopulator not <code>null</code>
+	 * @param entityResolver not <code>null</code>
+	 * @param configuration not <code>null</code>
+	 * @param documentVersion version of the documents of the populator, has to be changed with every change
+	 *        of the populated fields, may be <code>null</code>
+	 */
+	public Index(
+		final Class<T>             entityType       ,
+		final DocumentPopulator<T> documentPopulator,
+		final EntityResolver<T>    entityResolver   ,
+		final IndexConfiguration   configuration    ,
+		final String               documentVersion
+	)
+	{
+		this(entityType, documentPopulator, entityResolver, null, configuration, documentVersion);
+	}
+
+	/**
+	 * Constructor to create a new {@link Index}, which resolves hits by numeric keys.
+	 * <p>
+	 * The document version is stored with the commits of this index,
+	 * see {@link #Index(Class, DocumentPopulator, EntityResolver, IndexConfiguration, String)}.
+	 *
+	 * @param <T> the object type
+	 * @param entityType not <code>null</code>
+	 * @param documentPopulator not <code>null</code>
+	 * @param entityResolver not <code>null</code>
+	 * @param entityFingerprint may be <code>null</code>, in which case consistency markers are recorded
+	 *        based on the keys
+	 * @param configuration not <code>null</code>
+	 * @param documentVersion version of the documents of the populator, has to be changed with every change
+	 *        of the populated fields, may be <code>null</code>
+	 */
+	public Index(
+		final Class<T>             entityType       ,
+		final DocumentPopulator<T> documentPopulator,
+		final EntityResolver<T>    entityResolver   ,
+		final EntityFingerprint<T> entityFingerprint,
+		final IndexConfiguration   configuration    ,
+		final String               documentVersion
+	)
+	{
+		super();
+		this.entityType        = Objects.requireNonNull(entityType, () -> "EntityType cannot be null");
+		this.documentPopulator = Objects.requireNonNull(documentPopulator, () -> "DocumentPopulator cannot be null");
+		this.entityMatcher     = null;
+		this.entityResolver    = Objects.requireNonNull(entityResolver, () -> "EntityResolver cannot be null");
+		this.entityFingerprint = entityFingerprint != null
+			? entityFingerprint
+			: entity -> fingerprint(entityResolver.key(entity))
+		;
+		this.configuration     = Objects.requireNonNull(configuration, () -> "Configuration cannot be null");
+		this.layoutVersion     = documentVersion == null
+			? LAYOUT_VERSION
+			: LAYOUT_VERSION + '.' + documentVersion
+		;
 	}
 
 	/**
-	 * Adds an Java object to this index
+	 * Adds an Java object to this index.
+	 * It is searchable after the next refresh.
 	 *
 	 * @param entity the java object to add
+	 * @see #refresh()
 	 */
 	public synchronized void add(final T entity)
 	{
@@ -109,11 +383,9 @@ public class Index<T> implements Closeable
 
 		try
 		{
-			final Document document = new Document();
-			this.documentPopulator.accept(document, entity);
-			this.writer.addDocument(document);
-			this.writer.flush();
-			this.writer.commit();
+			this.writer.addDocument(this.createDocument(entity));
+			this.track(entity);
+			this.changed(1);
 		}
 		catch(final IOException e)
 		{
@@ -123,8 +395,10 @@ public class Index<T> implements Closeable
 
 	/**
 	 * Adds Java objects to this index, in a bulk operation.
+	 * They are searchable after the next refresh.
 	 *
 	 * @param entities the java objects to add
+	 * @see #refresh()
 	 */
 	public synchronized void addAll(final Collection<? extends T> entities)
 	{
@@ -134,13 +408,214 @@ public class Index<T> implements Closeable
 		{
 			for(final T entity : entities)
 			{
-				final Document document = new Document();
-				this.documentPopulator.accept(document, entity);
-				this.writer.addDocument(document);
+				this.writer.addDocument(this.createDocument(entity));
+				this.track(entity);
+			}
+			this.changed(entities.size());
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+	}
+
+	private Document createDocument(final T entity)
+	{
+		final Document document = new Document();
+		this.documentPopulator.accept(document, entity);
+		if(this.entityResolver != null)
+		{
+			document.add(new NumericDocValuesField(KEY_FIELD, this.entityResolver.key(entity)));
+		}
+		return document;
+	}
+
+	/**
+	 * Adds Java objects to this index in the background.
+	 * The entities are indexed in batches by a single background thread,
+	 * searches keep working on the last refreshed state in the meantime.
+	 *
+	 * @param entities the java objects to add
+	 * @see #pendingCount()
+	 * @see #awaitPending(long, TimeUnit)
+	 */
+	public void addAllInBackground(final Collection<? extends T> entities)
+	{
+		final List<T> copy = new ArrayList<>(entities);
+		if(copy.isEmpty())
+		{
+			return;
+		}
+
+		this.pendingCount.addAndGet(copy.size());
+		this.backgroundIndexer().execute(() ->
+		{
+			for(int from = 0, size = copy.size(); from < size; from += BACKGROUND_BATCH_SIZE)
+			{
+				final List<T> batch = copy.subList(from, Math.min(from + BACKGROUND_BATCH_SIZE, size));
+				try
+				{
+					this.addAll(batch);
+				}
+				catch(final RuntimeException e)
+				{
+					this.logger().severe("Background indexing of " + batch.size() + " entities failed", e);
+				}
+				finally
+				{
+					this.pendingCount.addAndGet(-batch.size());
+				}
+			}
+			this.refresh();
+		});
+	}
+
+	/**
+	 * Replaces the document of an entity in the background, see {@link #update(Term, Object, Object)}.
+	 * It is executed after all previously queued additions and updates.
+	 *
+	 * @param term the term which identifies the document of the replaced entity
+	 * @param replaced the replaced java object
+	 * @param entity the java object to index instead
+	 * @see #pendingCount()
+	 * @see #awaitPending(long, TimeUnit)
+	 */
+	public void updateInBackground(
+		final Term term    ,
+		final T    replaced,
+		final T    entity
+	)
+	{
+		this.pendingCount.incrementAndGet();
+		this.backgroundIndexer().execute(() ->
+		{
+			try
+			{
+				this.update(term, replaced, entity);
+			}
+			catch(final RuntimeException e)
+			{
+				this.logger().severe("Background indexing of an update failed", e);
+			}
+			finally
+			{
+				this.pendingCount.decrementAndGet();
+			}
+			this.refresh();
+		});
+	}
+
+	/**
+	 * Get the amount of entities which are queued for background indexing,
+	 * which is the lag between the Java objects and this index.
+	 *
+	 * @return amount of entities waiting to be indexed
+	 * @see #addAllInBackground(Collection)
+	 */
+	public long pendingCount()
+	{
+		return this.pendingCount.get();
+	}
+
+	/**
+	 * Waits until all entities, which were queued for background indexing before this call,
+	 * are searchable.
+	 *
+	 * @param timeout the maximum time to wait
+	 * @param unit the time unit of the timeout argument
+	 * @return <code>true</code> if the index is consistent, <code>false</code> if the timeout elapsed
+	 * @throws InterruptedException if the current thread was interrupted while waiting
+	 * @see #addAllInBackground(Collection)
+	 */
+	public boolean awaitPending(
+		final long     timeout,
+		final TimeUnit unit
+	)
+		throws InterruptedException
+	{
+		final ExecutorService backgroundIndexer = this.backgroundIndexer;
+		if(backgroundIndexer == null || this.pendingCount.get() == 0L)
+		{
+			this.refresh();
+			return true;
+		}
+
+		/*
+		 * The background indexer is single threaded,
+		 * so this no-op is executed after all previously queued tasks.
+		 */
+		final Future<?> marker = backgroundIndexer.submit(() -> {});
+		try
+		{
+			marker.get(timeout, unit);
+			this.refresh();
+			return true;
+		}
+		catch(final TimeoutException e)
+		{
+			return false;
+		}
+		catch(final ExecutionException e)
+		{
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private ExecutorService backgroundIndexer()
+	{
+		/*
+		 * Double-checked locking to reduce the overhead of acquiring a lock
+		 * by testing the locking criterion.
+		 * The field (this.backgroundIndexer) has to be volatile.
+		 */
+		ExecutorService backgroundIndexer = this.backgroundIndexer;
+		if(backgroundIndexer == null)
+		{
+			synchronized(this)
+			{
+				if((backgroundIndexer = this.backgroundIndexer) == null)
+				{
+					backgroundIndexer = this.backgroundIndexer = Executors.newSingleThreadExecutor(
+						runnable -> this.createDaemonThread(runnable, "Indexer")
+					);
+				}
 			}
+		}
+		return backgroundIndexer;
+	}
+
+	private Thread createDaemonThread(final Runnable runnable, final String purpose)
+	{
+		final Thread thread = new Thread(runnable, "Index-" + this.entityType.getSimpleName() + "-" + purpose);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Atomically replaces the document of an entity with a new one.
+	 * The replaced entity has to be indexed by exactly one document which contains the term,
+	 * so that the consistency markers can be kept up to date.
+	 * It is searchable after the next refresh.
+	 *
+	 * @param term the term which identifies the document of the replaced entity
+	 * @param replaced the replaced java object
+	 * @param entity the java object to index instead
+	 * @see #refresh()
+	 */
+	public synchronized void update(
+		final Term term    ,
+		final T    replaced,
+		final T    entity
+	)
+	{
+		this.lazyInit();
 
-			this.writer.flush();
-			this.writer.commit();
+		try
+		{
+			this.writer.updateDocument(term, this.createDocument(entity));
+			this.untrack(replaced);
+			this.track(entity);
+			this.changed(1);
 		}
 		catch(final IOException e)
 		{
@@ -160,8 +635,9 @@ public class Index<T> implements Closeable
 		try
 		{
 			this.writer.deleteDocuments(query);
-			this.writer.flush();
-			this.writer.commit();
+			// the removed entities are unknown, so are the consistency markers
+			this.indexedCount = -1L;
+			this.changed(1);
 		}
 		catch(final IOException e)
 		{
@@ -179,8 +655,10 @@ public class Index<T> implements Closeable
 		try
 		{
 			this.writer.deleteAll();
-			this.writer.flush();
-			this.writer.commit();
+			this.indexedCount    = 0L;
+			this.indexedChecksum = 0L;
+			this.commit();
+			this.refresh();
 		}
 		catch(final IOException e)
 		{
@@ -189,116 +667,1120 @@ public class Index<T> implements Closeable
 	}
 
 	/**
-	 * Queries this index.
+	 * Replaces all entries of this index with the given Java objects.
+	 * The documents are populated by several threads, with an enlarged RAM buffer and less merging,
+	 * see {@link IndexConfiguration#rebuildThreads()}.
+	 * <p>
+	 * Searches keep working on the state before the rebuild until it is committed,
+	 * the background refreshes are paused in the meantime.
+	 * <p>
+	 * If the rebuild is interrupted, the indexing threads stop after their current document,
+	 * and the index is left partially written and is not
+	 * {@link #isConsistentWith(long, long) consistent} with its source data anymore.
 	 *
-	 * @param query the search query
-	 * @param maxResults maximum number of results
-	 * @return the list of found objects
+	 * @param entities the java objects to index
+	 * @param listener notified about the progress, or <code>null</code> to log it
+	 * @throws InterruptedException if the current thread was interrupted while rebuilding
 	 */
-	public synchronized List<T> search(
-		final Query query     ,
-		final int   maxResults
+	public synchronized void rebuild(
+		final Collection<? extends T> entities,
+		final ProgressListener        listener
 	)
+		throws InterruptedException
 	{
 		this.lazyInit();
 
+		final List<T>               copy             = new ArrayList<>(entities);
+		final long                  total            = copy.size();
+		final ProgressListener      progressListener = listener != null
+			? listener
+			: this::logProgress
+		;
+		final LiveIndexWriterConfig config           = this.writer.getConfig();
+		final double                ramBufferMB      = config.getRAMBufferSizeMB();
+		final double                segmentsPerTier  = this.mergePolicy.getSegmentsPerTier();
+		final ExecutorService       workers          = Executors.newFixedThreadPool(
+			this.configuration.rebuildThreads(),
+			runnable -> this.createDaemonThread(runnable, "Rebuilder")
+		);
+		/*
+		 * Workers are cancelled by this flag between two documents, not by interruption,
+		 * since an interrupted IndexWriter may close the index as a tragic event.
+		 */
+		final AtomicBoolean         cancelled        = new AtomicBoolean();
+		this.pauseRefresh(true);
 		try
 		{
-			final TopDocs topDocs = this.searcher.search(query, maxResults);
-			final List<T> result = new ArrayList<>(topDocs.scoreDocs.length);
-			for(final ScoreDoc scoreDoc : topDocs.scoreDocs)
+			this.writer.deleteAll();
+			this.indexedCount    = -1L;
+			this.indexedChecksum = 0L;
+			config.setRAMBufferSizeMB(this.configuration.rebuildRamBufferMB());
+			this.mergePolicy.setSegmentsPerTier(REBUILD_SEGMENTS_PER_TIER);
+
+			final AtomicLong      done     = new AtomicLong();
+			final AtomicLong      checksum = new AtomicLong();
+			final List<Future<?>> futures  = new ArrayList<>();
+			for(int from = 0, size = copy.size(); from < size; from += REBUILD_CHUNK_SIZE)
 			{
-				final Document document = this.searcher.storedFields().document(scoreDoc.doc);
-				final T entity = this.entityMatcher.apply(document);
-				if(entity != null)
+				final List<T> chunk = copy.subList(from, Math.min(from + REBUILD_CHUNK_SIZE, size));
+				futures.add(workers.submit(() ->
 				{
-					result.add(entity);
-				}
+					long chunkChecksum = 0L;
+					for(final T entity : chunk)
+					{
+						if(cancelled.get())
+						{
+							return null;
+						}
+						// IndexWriter is thread safe and uses a document buffer per thread
+						this.writer.addDocument(this.createDocument(entity));
+						if(this.entityFingerprint != null)
+						{
+							chunkChecksum += this.entityFingerprint.applyAsLong(entity);
+						}
+					}
+					checksum.addAndGet(chunkChecksum);
+					progressListener.progress(done.addAndGet(chunk.size()), total);
+					return null;
+				}));
+			}
+			for(final Future<?> future : futures)
+			{
+				future.get();
+			}
+
+			if(this.configuration.forceMergeAfterRebuild())
+			{
+				this.writer.forceMerge(1);
+			}
+
+			this.indexedCount    = total;
+			this.indexedChecksum = checksum.get();
+			this.uncommittedCount.incrementAndGet();
+			this.commit();
+			this.pauseRefresh(false);
+			this.refresh();
+		}
+		catch(final InterruptedException e)
+		{
+			cancelled.set(true);
+			// wait for the workers to stop writing, the interruption flag was cleared by Future#get
+			awaitTermination(workers);
+			throw e;
+		}
+		catch(final ExecutionException e)
+		{
+			cancelled.set(true);
+			awaitTermination(workers);
+			final Throwable cause = e.getCause();
+			if(cause instanceof IOException)
+			{
+				throw new IORuntimeException((IOException)cause);
 			}
-			return result;
+			throw new IllegalStateException("Rebuild of index " + this.entityType.getSimpleName() + " failed", cause);
 		}
 		catch(final IOException e)
 		{
 			throw new IORuntimeException(e);
 		}
+		finally
+		{
+			workers.shutdown();
+			config.setRAMBufferSizeMB(ramBufferMB);
+			this.mergePolicy.setSegmentsPerTier(segmentsPerTier);
+			this.pauseRefresh(false);
+		}
 	}
 
 	/**
-	 * Creates a new Lucene query builder.
-	 *
-	 * @return a new query builder.
+	 * Waits for cancelled rebuild workers to finish their current document.
 	 */
-	public synchronized QueryBuilder createQueryBuilder()
+	private static void awaitTermination(final ExecutorService workers)
 	{
-		this.lazyInit();
+		workers.shutdown();
+		try
+		{
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
 
-		return new QueryBuilder(
-			this.writer.getAnalyzer()
-		);
+	private void logProgress(final long done, final long total)
+	{
+		// roughly every ten percent, chunks complete out of order
+		final long step = Math.max(REBUILD_CHUNK_SIZE, total / 10);
+		if(done == total || done % step < REBUILD_CHUNK_SIZE)
+		{
+			this.logger().info(
+				"Rebuilding index " + this.entityType.getSimpleName() + ": " + done + " / " + total
+			);
+		}
 	}
 
 	/**
-	 * Get the amount of entries in this index.
-	 *
-	 * @return amount of entries
+	 * Makes all changes visible to subsequent searches, without committing them.
+	 * This is done periodically in the background, see {@link IndexConfiguration#refreshIntervalMillis()}.
+	 * Nothing happens while a {@link #rebuild(Collection, ProgressListener) rebuild} is running.
 	 */
-	public synchronized int size()
+	public void refresh()
 	{
-		this.lazyInit();
-
-		return this.searcher.getIndexReader().numDocs();
-	}
+		final SearcherManager searcherManager = this.searcherManager;
+		if(searcherManager == null)
+		{
+			return;
+		}
 
-	private void lazyInit()
-	{
+		final Lock lock = this.refreshLock.readLock();
+		lock.lock();
 		try
 		{
-			if(this.directory == null)
-			{
-				final Path path = Paths.get(
-					"data",
-					"index",
-					this.entityType.getSimpleName()
-				);
-				this.directory = new MMapDirectory(path);
-				this.writer = new IndexWriter(
-					this.directory,
-					new IndexWriterConfig(new StandardAnalyzer())
-				);
-				this.searcher = new IndexSearcher(
-					this.reader = DirectoryReader.open(this.writer)
-				);
-			}
-			else
+			if(!this.refreshPaused)
 			{
-				final DirectoryReader newReader = DirectoryReader.openIfChanged(this.reader);
-				if(newReader != null && newReader != this.reader)
-				{
-					this.reader.close();
-					this.reader   = newReader;
-					this.searcher = new IndexSearcher(this.reader);
-				}
+				searcherManager.maybeRefresh();
 			}
 		}
 		catch(final IOException e)
 		{
 			throw new IORuntimeException(e);
 		}
+		finally
+		{
+			lock.unlock();
+		}
 	}
 
-	@Override
-	public synchronized void close() throws IOException
+	/**
+	 * Pauses or resumes {@link #refresh()}. Once paused, no refresh is running anymore.
+	 */
+	private void pauseRefresh(final boolean paused)
 	{
-		if(this.directory != null)
+		final Lock lock = this.refreshLock.writeLock();
+		lock.lock();
+		try
+		{
+			this.refreshPaused = paused;
+		}
+		finally
 		{
-			this.writer.close();
-			this.reader.close();
-			this.directory.close();
+			lock.unlock();
+		}
+	}
 
-			this.directory = null;
-			this.writer    = null;
-			this.reader    = null;
-			this.searcher  = null;
+	/**
+	 * Commits all pending changes durably.
+	 * This is done in batches in the background, see {@link IndexConfiguration}.
+	 */
+	public synchronized void commit()
+	{
+		if(this.writer == null)
+		{
+			return;
+		}
+
+		try
+		{
+			if(this.uncommittedCount.getAndSet(0L) > 0L || this.writer.hasUncommittedChanges())
+			{
+				this.writer.setLiveCommitData(this.createCommitData().entrySet());
+				this.writer.commit();
+			}
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * Marks this index as consistent with its source data, after it was reconciled externally,
+	 * and commits all pending changes.
+	 *
+	 * @param count the amount of entities in the source data
+	 * @param checksum the sum of all entity fingerprints of the source data
+	 * @see #isConsistentWith(long, long)
+	 */
+	public synchronized void markConsistent(
+		final long count   ,
+		final long checksum
+	)
+	{
+		this.lazyInit();
+
+		this.indexedCount    = count;
+		this.indexedChecksum = checksum;
+		this.uncommittedCount.incrementAndGet();
+		this.commit();
+		this.refresh();
+	}
+
+	/**
+	 * Checks if the content of this index matches the source data,
+	 * based on the consistency markers recorded in the last commit
+	 * and the changes since then.
+	 * <p>
+	 * An index which was written without markers, or which was only partially written,
+	 * for example due to a crash, is not consistent.
+	 *
+	 * @param count the amount of entities in the source data
+	 * @param checksum the sum of all entity fingerprints of the source data
+	 * @return <code>true</code> if this index is consistent with the source data
+	 */
+	public synchronized boolean isConsistentWith(
+		final long count   ,
+		final long checksum
+	)
+	{
+		this.lazyInit();
+
+		return this.entityFingerprint != null
+			&& this.indexedCount      == count
+			&& this.indexedChecksum   == checksum
+			&& this.writer.getDocStats().numDocs == count
+		;
+	}
+
+	/**
+	 * Spreads the bits of a numeric key, to be used as an {@link EntityFingerprint},
+	 * since the sum of fingerprints is used as order independent checksum.
+	 *
+	 * @param key the key of an entity
+	 * @return the fingerprint of the key
+	 */
+	public static long fingerprint(final long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		h *= 0xC2B2AE3D27D4EB4FL;
+		return h ^ h >>> 29;
+	}
+
+	private void track(final T entity)
+	{
+		if(this.entityFingerprint != null && this.indexedCount >= 0L)
+		{
+			this.indexedCount++;
+			this.indexedChecksum += this.entityFingerprint.applyAsLong(entity);
+		}
+	}
+
+	private void untrack(final T entity)
+	{
+		if(this.entityFingerprint != null && this.indexedCount >= 0L)
+		{
+			this.indexedCount--;
+			this.indexedChecksum -= this.entityFingerprint.applyAsLong(entity);
+		}
+	}
+
+	/**
+	 * Gets a custom value which is stored with the commits of this index.
+	 *
+	 * @param key the key of the value
+	 * @return the value, or <code>null</code> if none is present
+	 * @see #putUserData(String, String)
+	 */
+	public synchronized String userData(final String key)
+	{
+		this.lazyInit();
+
+		return this.userData.get(key);
+	}
+
+	/**
+	 * Sets a custom value, which is stored with the next commit.
+	 * Versions of the document layout are handled by the index itself,
+	 * see {@link #Index(Class, DocumentPopulator, EntityResolver, IndexConfiguration, String)}.
+	 *
+	 * @param key the key of the value
+	 * @param value the value
+	 * @see #userData(String)
+	 */
+	public synchronized void putUserData(
+		final String key  ,
+		final String value
+	)
+	{
+		this.lazyInit();
+
+		if(COMMIT_DATA_COUNT.equals(key) || COMMIT_DATA_CHECKSUM.equals(key) || COMMIT_DATA_LAYOUT.equals(key))
+		{
+			throw new IllegalArgumentException("Reserved key: " + key);
+		}
+		this.userData.put(key, value);
+		this.uncommittedCount.incrementAndGet();
+	}
+
+	private Map<String, String> createCommitData()
+	{
+		final Map<String, String> commitData = new HashMap<>(this.userData);
+		if(this.entityFingerprint != null && this.indexedCount >= 0L)
+		{
+			commitData.put(COMMIT_DATA_COUNT, Long.toString(this.indexedCount));
+			commitData.put(COMMIT_DATA_CHECKSUM, Long.toString(this.indexedChecksum));
+		}
+		return commitData;
+	}
+
+	private void readCommitData()
+	{
+		final Map<String, String> commitData = new HashMap<>();
+		final Iterable<Map.Entry<String, String>> liveCommitData = this.writer.getLiveCommitData();
+		if(liveCommitData != null)
+		{
+			liveCommitData.forEach(entry -> commitData.put(entry.getKey(), entry.getValue()));
+		}
+
+		final String count    = commitData.remove(COMMIT_DATA_COUNT);
+		final String checksum = commitData.remove(COMMIT_DATA_CHECKSUM);
+		this.userData.clear();
+		this.userData.putAll(commitData);
+		if(count != null && checksum != null)
+		{
+			this.indexedCount    = Long.parseLong(count);
+			this.indexedChecksum = Long.parseLong(checksum);
+		}
+		else
+		{
+			// new indices are empty, everything else is of unknown state
+			this.indexedCount    = this.writer.getDocStats().numDocs == 0 ? 0L : -1L;
+			this.indexedChecksum = 0L;
+		}
+	}
+
+	/**
+	 * Counts changed documents and commits if the configured limit is reached.
+	 */
+	private void changed(final int documentCount)
+	{
+		if(this.uncommittedCount.addAndGet(documentCount) >= this.configuration.maxUncommittedDocuments())
+		{
+			this.commit();
+		}
+	}
+
+	/**
+	 * Queries this index.
+	 *
+	 * @param query the search query
+	 * @param maxResults maximum number of results
+	 * @return the list of found objects
+	 */
+	public List<T> search(
+		final Query query     ,
+		final int   maxResults
+	)
+	{
+		final SearcherManager searcherManager = this.searcherManager();
+		try
+		{
+			final IndexSearcher searcher = searcherManager.acquire();
+			try
+			{
+				final TopDocs topDocs = searcher.search(query, maxResults);
+				return this.resolve(searcher, topDocs.scoreDocs, 0);
+			}
+			finally
+			{
+				searcherManager.release(searcher);
+			}
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * Queries one page of this index, skipping a given amount of results.
+	 * The total hits are counted exactly.
+	 *
+	 * @param query the search query
+	 * @param offset zero or positive amount of results to skip
+	 * @param pageSize positive maximum number of results
+	 * @return the requested page
+	 */
+	public SearchPage<T> search(
+		final Query query   ,
+		final int   offset  ,
+		final int   pageSize
+	)
+	{
+		return this.search(query, offset, pageSize, Collections.emptyList());
+	}
+
+	/**
+	 * Queries one page of this index, skipping a given amount of results,
+	 * and counts the values of facet fields over all hits.
+	 * The facet fields have to be indexed as {@link SortedSetDocValuesField}s,
+	 * the counts are computed from the doc values, without resolving any hits.
+	 *
+	 * @param query the search query
+	 * @param offset zero or positive amount of results to skip
+	 * @param pageSize positive maximum number of results
+	 * @param facetFields the names of the fields to count the values of
+	 * @return the requested page, including the facet counts
+	 */
+	public SearchPage<T> search(
+		final Query              query      ,
+		final int                offset     ,
+		final int                pageSize   ,
+		final Collection<String> facetFields
+	)
+	{
+		requireZeroOrPositive(offset, () -> "Offset cannot be negative");
+		requirePositive(pageSize, () -> "Page size must be greater than zero");
+
+		return this.searchPage(query, null, offset, (long)offset + pageSize, facetFields);
+	}
+
+	/**
+	 * Queries one page of this index, continuing after the last result of the previous page.
+	 * Unlike offset based paging, previous pages don't have to be collected again.
+	 * The total hits are counted exactly.
+	 * <p>
+	 * Cursors are only meaningful for the same query, and may skip or repeat results
+	 * if the index was changed in between.
+	 *
+	 * @param query the search query
+	 * @param cursor the {@link SearchPage#nextCursor()} of the previous page, or <code>null</code> for the first page
+	 * @param pageSize positive maximum number of results
+	 * @return the requested page
+	 */
+	public SearchPage<T> search(
+		final Query  query   ,
+		final String cursor  ,
+		final int    pageSize
+	)
+	{
+		requirePositive(pageSize, () -> "Page size must be greater than zero");
+
+		if(cursor == null)
+		{
+			return this.searchPage(query, null, 0, pageSize, Collections.emptyList());
+		}
+
+		final String[] parts = cursor.split(":");
+		if(parts.length != 3)
+		{
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+		try
+		{
+			final ScoreDoc after = new ScoreDoc(
+				Integer.parseInt(parts[1]),
+				Float.intBitsToFloat(Integer.parseUnsignedInt(parts[0], 16))
+			);
+			final int consumed = requireZeroOrPositive(
+				Integer.parseInt(parts[2]),
+				() -> "Invalid cursor: " + cursor
+			);
+			return this.searchPage(query, after, consumed, pageSize, Collections.emptyList());
+		}
+		catch(final NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+		}
+	}
+
+	/**
+	 * @param after the last hit of the previous page, or <code>null</code>
+	 * @param skip the amount of hits to skip without <code>after</code>, or the amount already consumed with it
+	 * @param requestedHits the amount of hits to collect, including the skipped ones
+	 * @param facetFields the fields to count the values of, may be empty
+	 */
+	@SuppressWarnings("unchecked")
+	private SearchPage<T> searchPage(
+		final Query              query        ,
+		final ScoreDoc           after        ,
+		final int                skip         ,
+		final long               requestedHits,
+		final Collection<String> facetFields
+	)
+	{
+		final SearcherManager searcherManager = this.searcherManager();
+		try
+		{
+			final IndexSearcher searcher = searcherManager.acquire();
+			try
+			{
+				/*
+				 * The collector allocates its queue for all hits up front, so they are capped at the amount of documents.
+				 * Offsets beyond it yield an empty page, for which the hits are only counted.
+				 */
+				final int maxDoc  = searcher.getIndexReader().maxDoc();
+				final int numHits = after == null && skip >= maxDoc
+					? 1
+					: (int)Math.max(1L, Math.min(requestedHits, maxDoc))
+				;
+				final TopScoreDocCollectorManager topDocsManager = new TopScoreDocCollectorManager(
+					numHits,
+					after,
+					Integer.MAX_VALUE
+				);
+				final TopDocs                        topDocs;
+				final Map<String, Map<String, Long>> facets ;
+				if(facetFields.isEmpty())
+				{
+					topDocs = searcher.search(query, topDocsManager);
+					facets  = Collections.emptyMap();
+				}
+				else
+				{
+					// one pass over all hits for both, the top docs and the facet counts
+					final Object[] results = searcher.search(
+						query,
+						new MultiCollectorManager(topDocsManager, new FacetCounterManager(facetFields))
+					);
+					topDocs = (TopDocs)results[0];
+					facets  = (Map<String, Map<String, Long>>)results[1];
+				}
+				final ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+				final int        from      = after == null ? Math.min(skip, scoreDocs.length) : 0;
+				final long       totalHits = topDocs.totalHits.value();
+				final long       consumed  = (after == null ? 0L : skip) + scoreDocs.length;
+
+				String nextCursor = null;
+				if(scoreDocs.length > from && consumed < totalHits)
+				{
+					final ScoreDoc last = scoreDocs[scoreDocs.length - 1];
+					nextCursor = Integer.toHexString(Float.floatToIntBits(last.score))
+						+ ":" + last.doc
+						+ ":" + consumed
+					;
+				}
+
+				return new SearchPage<>(
+					totalHits,
+					this.resolve(searcher, scoreDocs, from),
+					nextCursor,
+					facets
+				);
+			}
+			finally
+			{
+				searcherManager.release(searcher);
+			}
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * Counts the values of {@link SortedSetDocValuesField}s of all collected documents.
+	 * Values are counted by ordinal per segment, and only looked up once per segment.
+	 */
+	private static class FacetCounter implements Collector
+	{
+		final String[]                fields;
+		final List<Map<String, Long>> counts;
+
+		FacetCounter(final String[] fields)
+		{
+			super();
+			this.fields = fields;
+			this.counts = new ArrayList<>(fields.length);
+			for(int i = 0; i < fields.length; i++)
+			{
+				this.counts.add(new HashMap<>());
+			}
+		}
+
+		@Override
+		public ScoreMode scoreMode()
+		{
+			return ScoreMode.COMPLETE_NO_SCORES;
+		}
+
+		@Override
+		public LeafCollector getLeafCollector(final LeafReaderContext context) throws IOException
+		{
+			final int                  fieldCount    = this.fields.length;
+			final SortedSetDocValues[] docValues     = new SortedSetDocValues[fieldCount];
+			final int[][]              ordinalCounts = new int[fieldCount][];
+			for(int i = 0; i < fieldCount; i++)
+			{
+				docValues[i]     = DocValues.getSortedSet(context.reader(), this.fields[i]);
+				ordinalCounts[i] = new int[Math.toIntExact(docValues[i].getValueCount())];
+			}
+
+			return new LeafCollector()
+			{
+				@Override
+				public void setScorer(final Scorable scorer)
+				{
+					// scores are not needed
+				}
+
+				@Override
+				public void collect(final int doc) throws IOException
+				{
+					for(int i = 0; i < fieldCount; i++)
+					{
+						final SortedSetDocValues values = docValues[i];
+						if(values.advanceExact(doc))
+						{
+							for(int v = 0, c = values.docValueCount(); v < c; v++)
+							{
+								ordinalCounts[i][(int)values.nextOrd()]++;
+							}
+						}
+					}
+				}
+
+				@Override
+				public void finish() throws IOException
+				{
+					for(int i = 0; i < fieldCount; i++)
+					{
+						final Map<String, Long> fieldCounts = FacetCounter.this.counts.get(i);
+						final int[]             ordinals    = ordinalCounts[i];
+						for(int ordinal = 0; ordinal < ordinals.length; ordinal++)
+						{
+							if(ordinals[ordinal] > 0)
+							{
+								fieldCounts.merge(
+									docValues[i].lookupOrd(ordinal).utf8ToString(),
+									(long)ordinals[ordinal],
+									Long::sum
+								);
+							}
+						}
+					}
+				}
+			};
+		}
+	}
+
+	/**
+	 * Creates a {@link FacetCounter} per search slice, and merges their counts.
+	 */
+	private static class FacetCounterManager implements CollectorManager<FacetCounter, Map<String, Map<String, Long>>>
+	{
+		final String[] fields;
+
+		FacetCounterManager(final Collection<String> fields)
+		{
+			super();
+			this.fields = fields.toArray(new String[fields.size()]);
+		}
+
+		@Override
+		public FacetCounter newCollector()
+		{
+			return new FacetCounter(this.fields);
+		}
+
+		@Override
+		public Map<String, Map<String, Long>> reduce(final Collection<FacetCounter> collectors)
+		{
+			final Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+			for(int i = 0; i < this.fields.length; i++)
+			{
+				final Map<String, Long> merged = new HashMap<>();
+				for(final FacetCounter collector : collectors)
+				{
+					collector.counts.get(i).forEach((value, count) -> merged.merge(value, count, Long::sum));
+				}
+
+				final Map<String, Long> sorted = new LinkedHashMap<>();
+				merged.entrySet().stream()
+					.sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+						.thenComparing(Map.Entry.comparingByKey()))
+					.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+				facets.put(this.fields[i], Collections.unmodifiableMap(sorted));
+			}
+			return facets;
+		}
+	}
+
+	/**
+	 * Matches the found documents to Java objects, skipping the ones which don't exist anymore.
+	 */
+	private List<T> resolve(
+		final IndexSearcher searcher ,
+		final ScoreDoc[]    scoreDocs,
+		final int           from
+	)
+		throws IOException
+	{
+		if(this.entityResolver != null)
+		{
+			return this.entityResolver.resolve(
+				this.keys(searcher.getIndexReader(), scoreDocs, from)
+			);
+		}
+
+		final StoredFields storedFields = searcher.storedFields();
+		final List<T>      result       = new ArrayList<>(scoreDocs.length - from);
+		for(int i = from; i < scoreDocs.length; i++)
+		{
+			final Document document = storedFields.document(scoreDocs[i].doc);
+			final T entity = this.entityMatcher.apply(document);
+			if(entity != null)
+			{
+				result.add(entity);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the entity keys of the hits from the doc values, in order of the hits.
+	 * Doc values can only be read forward, so the hits are visited in doc id order.
+	 * Hits without a key are omitted.
+	 */
+	private long[] keys(
+		final IndexReader reader   ,
+		final ScoreDoc[]  scoreDocs,
+		final int         from
+	)
+		throws IOException
+	{
+		final int    count   = scoreDocs.length - from;
+		// doc id in the upper, hit position in the lower half
+		final long[] byDocId = new long[count];
+		for(int i = 0; i < count; i++)
+		{
+			byDocId[i] = (long)scoreDocs[from + i].doc << 32 | i;
+		}
+		Arrays.sort(byDocId);
+
+		final List<LeafReaderContext> leaves  = reader.leaves();
+		final long[]                  keys    = new long[count];
+		final boolean[]               present = new boolean[count];
+		int                           leafEnd = 0;
+		LeafReaderContext             leaf    = null;
+		NumericDocValues              values  = null;
+		for(final long entry : byDocId)
+		{
+			final int doc      = (int)(entry >>> 32);
+			final int position = (int)entry;
+			while(doc >= leafEnd)
+			{
+				leaf    = leaves.get(leaf == null ? 0 : leaf.ord + 1);
+				leafEnd = leaf.docBase + leaf.reader().maxDoc();
+				values  = DocValues.getNumeric(leaf.reader(), KEY_FIELD);
+			}
+			if(values.advanceExact(doc - leaf.docBase))
+			{
+				keys[position]    = values.longValue();
+				present[position] = true;
+			}
+		}
+
+		int size = 0;
+		for(int i = 0; i < count; i++)
+		{
+			if(present[i])
+			{
+				keys[size++] = keys[i];
+			}
+		}
+		return size == count
+			? keys
+			: Arrays.copyOf(keys, size);
+	}
+
+	/**
+	 * Collects all terms of a field, which occur in at least one live document.
+	 * Meant to be used with single valued key fields, to reconcile this index with its source data.
+	 *
+	 * @param field the name of the field
+	 * @return all terms of the field
+	 */
+	public Set<String> terms(final String field)
+	{
+		final SearcherManager searcherManager = this.searcherManager();
+		try
+		{
+			final IndexSearcher searcher = searcherManager.acquire();
+			try
+			{
+				final Set<String> result = new HashSet<>();
+				final IndexReader reader = searcher.getIndexReader();
+				final Terms       terms  = MultiTerms.getTerms(reader, field);
+				if(terms == null)
+				{
+					return result;
+				}
+
+				final Bits      liveDocs  = MultiBits.getLiveDocs(reader);
+				final TermsEnum termsEnum = terms.iterator();
+				PostingsEnum    postings  = null;
+				for(BytesRef term; (term = termsEnum.next()) != null;)
+				{
+					postings = termsEnum.postings(postings, PostingsEnum.NONE);
+					for(int doc; (doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS;)
+					{
+						if(liveDocs == null || liveDocs.get(doc))
+						{
+							result.add(term.utf8ToString());
+							break;
+						}
+					}
+				}
+				return result;
+			}
+			finally
+			{
+				searcherManager.release(searcher);
+			}
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * Gets the Lucene query builder of this index, which uses the same analyzer as the index writer.
+	 * It is shared by all callers and must not be reconfigured.
+	 *
+	 * @return the shared query builder
+	 */
+	public QueryBuilder queryBuilder()
+	{
+		QueryBuilder queryBuilder = this.queryBuilder;
+		if(queryBuilder == null)
+		{
+			this.searcherManager();
+			queryBuilder = this.queryBuilder;
+		}
+		return queryBuilder;
+	}
+
+	/**
+	 * Gets the typo tolerant query builder of this index, which uses the same analyzer as the index writer.
+	 * It is shared by all callers, so are its cached automata.
+	 *
+	 * @return the shared fuzzy query builder
+	 */
+	public FuzzyQueryBuilder fuzzyQueryBuilder()
+	{
+		FuzzyQueryBuilder fuzzyQueryBuilder = this.fuzzyQueryBuilder;
+		if(fuzzyQueryBuilder == null)
+		{
+			this.searcherManager();
+			fuzzyQueryBuilder = this.fuzzyQueryBuilder;
+		}
+		return fuzzyQueryBuilder;
+	}
+
+	/**
+	 * Gets the generation of the searchable content of this index.
+	 * It changes whenever a {@link #refresh()} makes changes visible to searches,
+	 * so search results can be reused as long as the generation stays the same.
+	 *
+	 * @return the version of the current reader
+	 */
+	public long generation()
+	{
+		final SearcherManager searcherManager = this.searcherManager();
+		try
+		{
+			final IndexSearcher searcher = searcherManager.acquire();
+			try
+			{
+				// SearcherManager always opens directory readers
+				return ((DirectoryReader)searcher.getIndexReader()).getVersion();
+			}
+			finally
+			{
+				searcherManager.release(searcher);
+			}
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * Get the amount of entries in this index.
+	 *
+	 * @return amount of entries
+	 */
+	public int size()
+	{
+		final SearcherManager searcherManager = this.searcherManager();
+		try
+		{
+			final IndexSearcher searcher = searcherManager.acquire();
+			try
+			{
+				return searcher.getIndexReader().numDocs();
+			}
+			finally
+			{
+				searcherManager.release(searcher);
+			}
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * Gets the searcher manager without acquiring the monitor of this index, once it is initialized.
+	 */
+	private SearcherManager searcherManager()
+	{
+		/*
+		 * Double-checked locking to reduce the overhead of acquiring a lock
+		 * by testing the locking criterion.
+		 * The field (this.searcherManager) has to be volatile.
+		 */
+		SearcherManager searcherManager = this.searcherManager;
+		if(searcherManager == null)
+		{
+			synchronized(this)
+			{
+				this.lazyInit();
+				searcherManager = this.searcherManager;
+			}
+		}
+		return searcherManager;
+	}
+
+	private void lazyInit()
+	{
+		if(this.directory != null)
+		{
+			return;
+		}
+
+		try
+		{
+			this.directory = this.configuration.directoryProvider().createDirectory(
+				this.entityType.getSimpleName()
+			);
+			this.mergePolicy = new TieredMergePolicy();
+			this.writer      = new IndexWriter(
+				this.directory,
+				new IndexWriterConfig(new StandardAnalyzer())
+					.setMergePolicy(this.mergePolicy)
+			);
+			this.readCommitData();
+			if(!this.layoutVersion.equals(this.userData.get(COMMIT_DATA_LAYOUT))
+				&& this.writer.getDocStats().numDocs > 0)
+			{
+				// written with another layout, the owner has to rebuild it, custom values of it are dropped as well
+				this.writer.deleteAll();
+				this.userData.clear();
+				this.indexedCount    = 0L;
+				this.indexedChecksum = 0L;
+			}
+			this.userData.put(COMMIT_DATA_LAYOUT, this.layoutVersion);
+			this.queryBuilder      = new QueryBuilder(this.writer.getAnalyzer());
+			this.fuzzyQueryBuilder = new FuzzyQueryBuilder(this.writer.getAnalyzer());
+			// published last, see #searcherManager()
+			this.searcherManager = new SearcherManager(this.writer, null);
+
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(
+				runnable -> this.createDaemonThread(runnable, "Scheduler")
+			);
+			final long refreshInterval = this.configuration.refreshIntervalMillis();
+			this.scheduler.scheduleWithFixedDelay(
+				() -> this.runSafely(this::refresh, "Refresh"),
+				refreshInterval,
+				refreshInterval,
+				TimeUnit.MILLISECONDS
+			);
+			final long commitInterval = this.configuration.commitIntervalMillis();
+			this.scheduler.scheduleWithFixedDelay(
+				() -> this.runSafely(this::commit, "Commit"),
+				commitInterval,
+				commitInterval,
+				TimeUnit.MILLISECONDS
+			);
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+	}
+
+	/**
+	 * Scheduled tasks are cancelled on the first exception, so they are logged and swallowed.
+	 */
+	private void runSafely(final Runnable task, final String name)
+	{
+		try
+		{
+			task.run();
+		}
+		catch(final RuntimeException e)
+		{
+			this.logger().severe(name + " of index " + this.entityType.getSimpleName() + " failed", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		/*
+		 * Not synchronized while waiting for the background indexer,
+		 * since its tasks need the monitor of this index to complete.
+		 */
+		final ExecutorService backgroundIndexer = this.backgroundIndexer;
+		if(backgroundIndexer != null)
+		{
+			backgroundIndexer.shutdown();
+			try
+			{
+				backgroundIndexer.awaitTermination(1, TimeUnit.MINUTES);
+			}
+			catch(final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		synchronized(this)
+		{
+			this.backgroundIndexer = null;
+
+			if(this.directory != null)
+			{
+				this.scheduler.shutdownNow();
+				this.searcherManager.close();
+				// with the current consistency markers and user data
+				this.commit();
+				this.writer.close();
+				this.directory.close();
+
+				this.scheduler         = null;
+				this.directory         = null;
+				this.writer            = null;
+				this.mergePolicy       = null;
+				this.searcherManager   = null;
+				this.queryBuilder      = null;
+				this.fuzzyQueryBuilder = null;
+			}
+		}
+	}
+
+	/**
+	 * Closes this index after its initialization by the owner failed, so that it is not used anymore.
+	 * Exceptions while closing are added as suppressed exceptions to the original failure.
+	 *
+	 * @param failure the exception which caused the initialization to fail
+	 */
+	void closeAfterFailure(final Throwable failure)
+	{
+		try
+		{
+			this.close();
+		}
+		catch(final IOException | RuntimeException e)
+		{
+			failure.addSuppressed(e);
 		}
 	}
 
@@ -0,0 +1,171 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requirePositive;
+
+import java.util.Objects;
+
+/**
+ * Settings for the near-real-time behavior and the storage location of an {@link Index}.
+ * <p>
+ * Writes are visible to searches after the next refresh, and durable after the next commit.
+ * A commit is made when either the commit interval has elapsed or the amount of
+ * uncommitted documents reaches its limit, whichever comes first.
+ * <p>
+ * Where the index files are kept is defined by the {@link IndexDirectoryProvider}.
+ * <p>
+ * Full rebuilds populate the index from several threads, with an enlarged RAM buffer,
+ * see {@link Index#rebuild(java.util.Collection, Index.ProgressListener)}.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ *
+ */
+public class IndexConfiguration
+{
+	public static IndexConfiguration Default()
+	{
+		return new IndexConfiguration(
+			1_000, // refreshIntervalMillis
+			5_000, // commitIntervalMillis
+			1_000  // maxUncommittedDocuments
+		);
+	}
+
+
+	private final long                   refreshIntervalMillis  ;
+	private final long                   commitIntervalMillis   ;
+	private final int                    maxUncommittedDocuments;
+	private final IndexDirectoryProvider directoryProvider      ;
+	private final int                    rebuildThreads         ;
+	private final int                    rebuildRamBufferMB     ;
+	private final boolean                forceMergeAfterRebuild ;
+
+	/**
+	 * Constructor to create a new {@link IndexConfiguration} instance,
+	 * using the {@link IndexDirectoryProvider#Default()} directories.
+	 *
+	 * @param refreshIntervalMillis positive interval in which searchers are refreshed
+	 * @param commitIntervalMillis positive interval in which pending changes are committed
+	 * @param maxUncommittedDocuments positive amount of changed documents which triggers a commit
+	 */
+	public IndexConfiguration(
+		final long refreshIntervalMillis  ,
+		final long commitIntervalMillis   ,
+		final int  maxUncommittedDocuments
+	)
+	{
+		this(
+			refreshIntervalMillis,
+			commitIntervalMillis,
+			maxUncommittedDocuments,
+			IndexDirectoryProvider.Default()
+		);
+	}
+
+	/**
+	 * Constructor to create a new {@link IndexConfiguration} instance,
+	 * rebuilding with one thread per processor and a 256 MB RAM buffer, without a final merge.
+	 *
+	 * @param refreshIntervalMillis positive interval in which searchers are refreshed
+	 * @param commitIntervalMillis positive interval in which pending changes are committed
+	 * @param maxUncommittedDocuments positive amount of changed documents which triggers a commit
+	 * @param directoryProvider provider of the Lucene directories, not <code>null</code>
+	 */
+	public IndexConfiguration(
+		final long                   refreshIntervalMillis  ,
+		final long                   commitIntervalMillis   ,
+		final int                    maxUncommittedDocuments,
+		final IndexDirectoryProvider directoryProvider
+	)
+	{
+		this(
+			refreshIntervalMillis,
+			commitIntervalMillis,
+			maxUncommittedDocuments,
+			directoryProvider,
+			Runtime.getRuntime().availableProcessors(),
+			256,
+			false
+		);
+	}
+
+	/**
+	 * Constructor to create a new {@link IndexConfiguration} instance.
+	 *
+	 * @param refreshIntervalMillis positive interval in which searchers are refreshed
+	 * @param commitIntervalMillis positive interval in which pending changes are committed
+	 * @param maxUncommittedDocuments positive amount of changed documents which triggers a commit
+	 * @param directoryProvider provider of the Lucene directories, not <code>null</code>
+	 * @param rebuildThreads positive amount of threads populating the index in a full rebuild
+	 * @param rebuildRamBufferMB positive size of the indexing RAM buffer during a full rebuild
+	 * @param forceMergeAfterRebuild if the index is merged into a single segment after a full rebuild
+	 */
+	public IndexConfiguration(
+		final long                   refreshIntervalMillis  ,
+		final long                   commitIntervalMillis   ,
+		final int                    maxUncommittedDocuments,
+		final IndexDirectoryProvider directoryProvider      ,
+		final int                    rebuildThreads         ,
+		final int                    rebuildRamBufferMB     ,
+		final boolean                forceMergeAfterRebuild
+	)
+	{
+		super();
+		this.refreshIntervalMillis   = requirePositive(refreshIntervalMillis  , () -> "Refresh interval must be greater than zero");
+		this.commitIntervalMillis    = requirePositive(commitIntervalMillis   , () -> "Commit interval must be greater than zero");
+		this.maxUncommittedDocuments = requirePositive(maxUncommittedDocuments, () -> "Max uncommitted documents must be greater than zero");
+		this.directoryProvider       = Objects.requireNonNull(directoryProvider, () -> "Directory provider cannot be null");
+		this.rebuildThreads          = requirePositive(rebuildThreads         , () -> "Rebuild threads must be greater than zero");
+		this.rebuildRamBufferMB      = requirePositive(rebuildRamBufferMB     , () -> "Rebuild RAM buffer must be greater than zero");
+		this.forceMergeAfterRebuild  = forceMergeAfterRebuild;
+	}
+
+	public long refreshIntervalMillis()
+	{
+		return this.refreshIntervalMillis;
+	}
+
+	public long commitIntervalMillis()
+	{
+		return this.commitIntervalMillis;
+	}
+
+	public int maxUncommittedDocuments()
+	{
+		return this.maxUncommittedDocuments;
+	}
+
+	public IndexDirectoryProvider directoryProvider()
+	{
+		return this.directoryProvider;
+	}
+
+	public int rebuildThreads()
+	{
+		return this.rebuildThreads;
+	}
+
+	public int rebuildRamBufferMB()
+	{
+		return this.rebuildRamBufferMB;
+	}
+
+	public boolean forceMergeAfterRebuild()
+	{
+		return this.forceMergeAfterRebuild;
+	}
+
+}
@@ -0,0 +1,103 @@
+
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
+
+/**
+ * Provider of the Lucene {@link Directory} an {@link Index} is written to.
+ *
+ * @see IndexConfiguration#directoryProvider()
+ */
+@FunctionalInterface
+public interface IndexDirectoryProvider
+{
+	/**
+	 * Creates the directory for an index.
+	 *
+	 * @param indexName the name of the index, unique per application
+	 * @return a new directory
+	 * @throws IOException if the directory cannot be created
+	 */
+	public Directory createDirectory(String indexName) throws IOException;
+
+
+	/**
+	 * Memory-mapped directories in <code>data/index</code>.
+	 *
+	 * @return the default directory provider
+	 */
+	public static IndexDirectoryProvider Default()
+	{
+		return MMap(Paths.get("data", "index"));
+	}
+
+	/**
+	 * Heap based directories, which are lost on shutdown.
+	 * Intended for tests and ephemeral nodes, the indices are rebuilt on every start.
+	 *
+	 * @return an in-memory directory provider
+	 */
+	public static IndexDirectoryProvider InMemory()
+	{
+		return indexName -> new ByteBuffersDirectory();
+	}
+
+	/**
+	 * Memory-mapped directories, one sub directory per index.
+	 *
+	 * @param baseDirectory the parent directory of all indices
+	 * @return a memory-mapped directory provider
+	 */
+	public static IndexDirectoryProvider MMap(final Path baseDirectory)
+	{
+		Objects.requireNonNull(baseDirectory, () -> "Base directory cannot be null");
+		return indexName -> new MMapDirectory(baseDirectory.resolve(indexName));
+	}
+
+	/**
+	 * Directories which are stored inside an {@link EmbeddedStorageManager},
+	 * so that index and object graph share one storage and one backup.
+	 * Every Lucene commit is stored in a storage commit of its own, which is not part of the commits
+	 * of the entities, see {@link StoredIndexDirectory}.
+	 *
+	 * @param storageManager the started storage manager to store the files with, not <code>null</code>
+	 * @param data the root object of the storage, which holds the files, not <code>null</code>
+	 * @return a storage based directory provider
+	 * @see StoredIndexDirectory
+	 */
+	public static IndexDirectoryProvider Storage(
+		final EmbeddedStorageManager storageManager,
+		final Data                   data
+	)
+	{
+		Objects.requireNonNull(storageManager, () -> "Storage manager cannot be null");
+		Objects.requireNonNull(data, () -> "Data cannot be null");
+		return indexName -> new StoredIndexDirectory(
+			data.indexFiles(indexName, storageManager),
+			storageManager
+		);
+	}
+
+}
@@ -14,33 +14,79 @@ package org.eclipse.store.demo.bookstore.data;
  * #L%
  */
 
-import static java.util.stream.Collectors.toList;
-import static org.eclipse.serializer.util.X.coalesce;
+import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requirePositive;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Stream;
 
 import org.eclipse.serializer.concurrency.LockScope;
+import org.eclipse.serializer.persistence.types.PersistenceStoring;
+import org.eclipse.store.demo.bookstore.BookStoreDemo;
+import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
 
 /**
  * Inventory entity which holds {@link Book}s and amounts of them.
  * <p>
+ * The amounts are held in a compact, persistent {@link BookAmounts} map, which is changed atomically per book,
+ * so stock movements of different books, e.g. by concurrent checkouts, don't block each other.
+ * Only adding a new book to the inventory and removing several books at once require exclusive access.
+ * Every operation stores its own changes of the amounts, not the ones of concurrent operations.
+ * <p>
  * All operations on this type are thread safe.
  *
  * @see LockScope
  */
 public class Inventory extends LockScope
 {
-	private final Map<Book, Integer> inventoryMap;
+	/**
+	 * Gets notified after stock movements in an inventory, see {@link Inventory#bind(StockListener)}.
+	 */
+	@FunctionalInterface
+	static interface StockListener
+	{
+		/**
+		 * @param books the books with changed amounts
+		 * @param persister the persister the amounts were stored with
+		 */
+		void stockChanged(Collection<Book> books, PersistenceStoring persister);
+	}
+
+
+	/**
+	 * Amounts by book, see {@link #bookAmounts()}.
+	 */
+	private volatile BookAmounts             bookAmounts  ;
+	/**
+	 * Former representation of the amounts, only set in inventories which were stored before
+	 * {@link BookAmounts} were introduced. It is migrated by the first stock movement.
+	 */
+	private Map<Book, Integer>               inventoryMap ;
+	/*
+	 * Transient means it is not persisted by EclipseStore, but created on demand.
+	 */
+	private transient volatile StockListener stockListener;
+	/**
+	 * Converted {@link #inventoryMap} which is read until the migration is stored.
+	 */
+	private transient volatile BookAmounts   legacyAmounts;
+	/**
+	 * Set when a book was added, which replaces the arrays of {@link #bookAmounts}. Guarded by the write lock.
+	 */
+	private transient boolean                bookAdded    ;
 
 	public Inventory()
 	{
-		this(new HashMap<>());
+		super();
+
+		this.bookAmounts = new BookAmounts(8);
 	}
 
 	/**
@@ -50,7 +96,70 @@ public class Inventory extends LockScope
 	{
 		super();
 		
-		this.inventoryMap = inventoryMap;
+		this.bookAmounts = BookAmounts.of(inventoryMap);
+	}
+
+	/**
+	 * Gets the amounts for reading, without any side effects on the storage.
+	 * Inventories which were stored with the former {@link #inventoryMap} are converted in memory only.
+	 */
+	private BookAmounts bookAmounts()
+	{
+		final BookAmounts bookAmounts = this.bookAmounts;
+		return bookAmounts != null
+			? bookAmounts
+			: this.legacyAmounts()
+		;
+	}
+
+	private BookAmounts legacyAmounts()
+	{
+		/*
+		 * Double-checked locking, since multiple threads may get here at the same time.
+		 * The field (this.legacyAmounts) has to be volatile.
+		 */
+		BookAmounts legacyAmounts = this.legacyAmounts;
+		if(legacyAmounts == null)
+		{
+			synchronized(this)
+			{
+				if((legacyAmounts = this.legacyAmounts) == null)
+				{
+					final Map<Book, Integer> inventoryMap = this.inventoryMap;
+					legacyAmounts = this.legacyAmounts = BookAmounts.of(
+						inventoryMap != null
+							? inventoryMap
+							: Map.of()
+					);
+				}
+			}
+		}
+		return legacyAmounts;
+	}
+
+	/**
+	 * Gets the amounts for stock movements. Inventories which were stored with the former {@link #inventoryMap}
+	 * are migrated first, and the migration is stored with the given persister, along with the movement.
+	 */
+	private BookAmounts bookAmounts(final PersistenceStoring persister)
+	{
+		final BookAmounts bookAmounts = this.bookAmounts;
+		if(bookAmounts != null)
+		{
+			return bookAmounts;
+		}
+
+		return this.write(() ->
+		{
+			if(this.bookAmounts == null)
+			{
+				// readers may hold the converted amounts already, so they are kept
+				this.bookAmounts  = this.legacyAmounts();
+				this.inventoryMap = null;
+				persister.store(this);
+			}
+			return this.bookAmounts;
+		});
 	}
 	
 	/**
@@ -61,10 +170,15 @@ public class Inventory extends LockScope
 	 */
 	public int amount(final Book book)
 	{
-		return this.read(() -> coalesce(
-			this.inventoryMap.get(book),
-			0
-		));
+		final BookAmounts bookAmounts = this.bookAmounts();
+		final long        key         = Book.isbn13Key(book.isbn13());
+		return this.read(() ->
+		{
+			final int index = bookAmounts.indexOf(key);
+			return index < 0
+				? 0
+				: bookAmounts.amount(index);
+		});
 	}
 
 	/**
@@ -76,10 +190,22 @@ public class Inventory extends LockScope
 	 */
 	public <T> T compute(final Function<Stream<Entry<Book, Integer>>, T> streamFunction)
 	{
-		return this.read(() ->
-			streamFunction.apply(
-				this.inventoryMap.entrySet().stream()
-			)
+		return streamFunction.apply(
+			this.slots().stream()
+		);
+	}
+
+	/**
+	 * Calls an action for every book in stock, with its amount.
+	 * Unlike {@link #compute(Function)}, no objects are created per book.
+	 *
+	 * @param action the action to perform with the book and its positive amount
+	 */
+	public void forEach(final ObjIntConsumer<? super Book> action)
+	{
+		final BookAmounts bookAmounts = this.bookAmounts();
+		this.read(() ->
+			bookAmounts.forEach(action)
 		);
 	}
 
@@ -90,9 +216,19 @@ public class Inventory extends LockScope
 	 */
 	public int slotCount()
 	{
+		final BookAmounts bookAmounts = this.bookAmounts();
 		return this.read(() ->
-			this.inventoryMap.size()
-		);
+		{
+			int count = 0;
+			for(int i = 0, size = bookAmounts.size(); i < size; i++)
+			{
+				if(bookAmounts.amount(i) > 0)
+				{
+					count++;
+				}
+			}
+			return count;
+		});
 	}
 
 	/**
@@ -103,9 +239,9 @@ public class Inventory extends LockScope
 	 */
 	public List<Entry<Book, Integer>> slots()
 	{
-		return this.read(() ->
-			new ArrayList<>(this.inventoryMap.entrySet())
-		);
+		final List<Entry<Book, Integer>> slots = new ArrayList<>();
+		this.forEach((book, amount) -> slots.add(Map.entry(book, amount)));
+		return slots;
 	}
 
 	/**
@@ -116,9 +252,331 @@ public class Inventory extends LockScope
 	 */
 	public List<Book> books()
 	{
+		final List<Book> books = new ArrayList<>();
+		this.forEach((book, amount) -> books.add(book));
+		return books;
+	}
+
+	/**
+	 * Adds copies of a book to this inventory and stores it with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.increment(book, amount, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param book the book to restock
+	 * @param amount positive amount of copies
+	 * @return the new amount of the book in this inventory
+	 */
+	public int increment(
+		final Book book  ,
+		final int  amount
+	)
+	{
+		return this.increment(book, amount, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Adds copies of a book to this inventory and stores the changed slot with the given persister.
+	 *
+	 * @param book the book to restock
+	 * @param amount positive amount of copies
+	 * @param persister the persister to store it with
+	 * @return the new amount of the book in this inventory
+	 */
+	public int increment(
+		final Book               book     ,
+		final int                amount   ,
+		final PersistenceStoring persister
+	)
+	{
+		final int newAmount = this.increment(this.bookAmounts(persister), book, amount);
+		this.storeChanges(Map.of(book, amount), persister);
+		return newAmount;
+	}
+
+	/**
+	 * Removes copies of a book from this inventory and stores it with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.decrement(book, amount, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param book the book to remove
+	 * @param amount positive amount of copies
+	 * @return the new amount of the book in this inventory
+	 * @throws IllegalStateException if there are not enough copies in stock, nothing is changed then
+	 */
+	public int decrement(
+		final Book book  ,
+		final int  amount
+	)
+	{
+		return this.decrement(book, amount, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Removes copies of a book from this inventory and stores the changed slot with the given persister.
+	 *
+	 * @param book the book to remove
+	 * @param amount positive amount of copies
+	 * @param persister the persister to store it with
+	 * @return the new amount of the book in this inventory
+	 * @throws IllegalStateException if there are not enough copies in stock, nothing is changed then
+	 */
+	public int decrement(
+		final Book               book     ,
+		final int                amount   ,
+		final PersistenceStoring persister
+	)
+	{
+		final int newAmount = this.decrement(this.bookAmounts(persister), book, amount);
+		this.storeChanges(Map.of(book, -amount), persister);
+		return newAmount;
+	}
+
+	/**
+	 * Adds copies of several books to this inventory and stores the changed slots with the given persister.
+	 *
+	 * @param amounts positive amounts of copies by book
+	 * @param persister the persister to store it with
+	 */
+	public void incrementAll(
+		final Map<Book, Integer> amounts  ,
+		final PersistenceStoring persister
+	)
+	{
+		final BookAmounts bookAmounts = this.bookAmounts(persister);
+		amounts.forEach((book, amount) -> requirePositiveAmount(amount));
+		amounts.forEach((book, amount) -> this.increment(bookAmounts, book, amount));
+		this.storeChanges(amounts, persister);
+	}
+
+	/**
+	 * Removes copies of several books from this inventory, all or none,
+	 * and stores the changed slots with the given persister.
+	 * <p>
+	 * All books are checked before any of them is removed, with exclusive access to this inventory,
+	 * so concurrent operations never see a part of the removal.
+	 *
+	 * @param amounts positive amounts of copies by book
+	 * @param persister the persister to store it with
+	 * @throws IllegalStateException if there are not enough copies of a book in stock, nothing is changed then
+	 */
+	public void decrementAll(
+		final Map<Book, Integer> amounts  ,
+		final PersistenceStoring persister
+	)
+	{
+		final BookAmounts bookAmounts = this.bookAmounts(persister);
+		amounts.forEach((book, amount) ->
+		{
+			Objects.requireNonNull(book, () -> "Book cannot be null");
+			requirePositiveAmount(amount);
+		});
+
+		final Map<Book, Integer> deltas = new HashMap<>(amounts.size());
+		this.write(() ->
+		{
+			// single book movements hold the read lock, so the amounts don't change in between
+			final int[] indexes = new int[amounts.size()];
+			int         i       = 0;
+			for(final Entry<Book, Integer> entry : amounts.entrySet())
+			{
+				final Book book    = entry.getKey();
+				final int  index   = bookAmounts.indexOf(Book.isbn13Key(book.isbn13()));
+				final int  current = index < 0
+					? 0
+					: bookAmounts.amount(index);
+				if(current < entry.getValue())
+				{
+					throw notEnoughCopies(book, current, entry.getValue());
+				}
+				indexes[i++] = index;
+			}
+
+			i = 0;
+			for(final Entry<Book, Integer> entry : amounts.entrySet())
+			{
+				bookAmounts.add(indexes[i++], -entry.getValue());
+				deltas.put(entry.getKey(), -entry.getValue());
+			}
+		});
+		this.storeChanges(deltas, persister);
+	}
+
+	/**
+	 * Moves copies of a book from this inventory to another one,
+	 * and stores both with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.transfer(book, amount, target, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param book the book to move
+	 * @param amount positive amount of copies
+	 * @param target the receiving inventory
+	 * @throws IllegalStateException if there are not enough copies in stock, nothing is changed then
+	 */
+	public void transfer(
+		final Book      book  ,
+		final int       amount,
+		final Inventory target
+	)
+	{
+		this.transfer(book, amount, target, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Moves copies of a book from this inventory to another one, and stores both with the given persister.
+	 * <p>
+	 * The copies are removed from this inventory before they are added to the target,
+	 * so concurrent readers may see them in neither inventory for a moment, but never in both.
+	 *
+	 * @param book the book to move
+	 * @param amount positive amount of copies
+	 * @param target the receiving inventory
+	 * @param persister the persister to store them with
+	 * @throws IllegalStateException if there are not enough copies in stock, nothing is changed then
+	 */
+	public void transfer(
+		final Book               book     ,
+		final int                amount   ,
+		final Inventory          target   ,
+		final PersistenceStoring persister
+	)
+	{
+		Objects.requireNonNull(target, () -> "Target cannot be null");
+		if(target == this)
+		{
+			throw new IllegalArgumentException("Cannot transfer to the same inventory");
+		}
+
+		this.decrement(this.bookAmounts(persister), book, amount);
+		target.increment(target.bookAmounts(persister), book, amount);
+		this.storeChanges(Map.of(book, -amount), persister);
+		target.storeChanges(Map.of(book, amount), persister);
+	}
+
+	private int increment(
+		final BookAmounts bookAmounts,
+		final Book        book       ,
+		final int         amount
+	)
+	{
+		Objects.requireNonNull(book, () -> "Book cannot be null");
+		requirePositiveAmount(amount);
+
+		final long    key       = Book.isbn13Key(book.isbn13());
+		final Integer newAmount = this.read(() ->
+		{
+			final int index = bookAmounts.indexOf(key);
+			return index < 0
+				? null
+				: Integer.valueOf(bookAmounts.add(index, amount));
+		});
+		if(newAmount != null)
+		{
+			return newAmount;
+		}
+
+		// new book, the arrays are replaced
+		return this.write(() ->
+		{
+			final int index = bookAmounts.indexOf(key);
+			if(index >= 0)
+			{
+				return bookAmounts.add(index, amount);
+			}
+			bookAmounts.insert(book, key, amount);
+			this.bookAdded = true;
+			return amount;
+		});
+	}
+
+	private int decrement(
+		final BookAmounts bookAmounts,
+		final Book        book       ,
+		final int         amount
+	)
+	{
+		Objects.requireNonNull(book, () -> "Book cannot be null");
+		requirePositiveAmount(amount);
+
+		final long key = Book.isbn13Key(book.isbn13());
 		return this.read(() ->
-			this.inventoryMap.keySet().stream().collect(toList())
+		{
+			final int index = bookAmounts.indexOf(key);
+			int current, newAmount;
+			do
+			{
+				current = index < 0
+					? 0
+					: bookAmounts.amount(index);
+				newAmount = current - amount;
+				if(newAmount < 0)
+				{
+					throw notEnoughCopies(book, current, amount);
+				}
+			}
+			while(!bookAmounts.compareAndSet(index, current, newAmount));
+			return newAmount;
+		});
+	}
+
+	private static void requirePositiveAmount(final int amount)
+	{
+		requirePositive(amount, () -> "Amount must be greater than zero");
+	}
+
+	private static IllegalStateException notEnoughCopies(
+		final Book book   ,
+		final int  current,
+		final int  amount
+	)
+	{
+		return new IllegalStateException(
+			"Not enough copies of " + book.title() + " in stock: " + current + " < " + amount
 		);
 	}
 
+	/**
+	 * Stores the changes of one operation, in one go.
+	 * Changes of concurrent operations, which are not stored yet, are not included.
+	 * If a book was added, the whole map is stored.
+	 * <p>
+	 * Afterwards, outside of the lock, the {@link StockListener} is notified, if one is bound.
+	 *
+	 * @param deltas the changes of the amounts by book, which were applied already
+	 */
+	private void storeChanges(
+		final Map<Book, Integer> deltas   ,
+		final PersistenceStoring persister
+	)
+	{
+		final BookAmounts bookAmounts = this.bookAmounts();
+		this.write(() ->
+		{
+			final int[] indexes = new int[deltas.size()];
+			final int[] changes = new int[deltas.size()];
+			int         i       = 0;
+			for(final Entry<Book, Integer> entry : deltas.entrySet())
+			{
+				indexes[i]   = bookAmounts.indexOf(Book.isbn13Key(entry.getKey().isbn13()));
+				changes[i++] = entry.getValue();
+			}
+			bookAmounts.storeChanges(indexes, changes, this.bookAdded, persister);
+			this.bookAdded = false;
+		});
+
+		final StockListener stockListener = this.stockListener;
+		if(stockListener != null)
+		{
+			stockListener.stockChanged(deltas.keySet(), persister);
+		}
+	}
+
+	/**
+	 * Binds the listener which is notified after stock movements, used by {@link Shop#inventory()}.
+	 * The {@link Shops} use it to maintain their stock index.
+	 */
+	void bind(final StockListener stockListener)
+	{
+		this.stockListener = stockListener;
+	}
+
 }
@@ -0,0 +1,217 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.Stream;
+
+import org.eclipse.serializer.persistence.types.PersistenceStoring;
+
+/**
+ * Open addressing hash map with primitive ISBN-13 keys, see {@link Book#isbn13Key(CharSequence)}.
+ * <p>
+ * Keys and values are held in two parallel arrays with linear probing,
+ * so there are neither boxed keys nor entry objects.
+ * Zero is used as empty marker, which is never a valid ISBN-13 key.
+ * <p>
+ * Note that this class doesn't need to handle concurrency in any way,
+ * since it is only used by the {@link Books} implementation which handles thread safety.
+ */
+class IsbnBookMap
+{
+	private static final long EMPTY = 0L;
+
+	private long[] keys ;
+	private Book[] books;
+	private int    size ;
+
+	IsbnBookMap()
+	{
+		this(1024);
+	}
+
+	IsbnBookMap(final int expectedSize)
+	{
+		super();
+
+		final int capacity = tableSizeFor(expectedSize * 2);
+		this.keys  = new long[capacity];
+		this.books = new Book[capacity];
+	}
+
+	private static int tableSizeFor(final int minCapacity)
+	{
+		return Math.max(16, Integer.highestOneBit(Math.max(minCapacity, 1) - 1) << 1);
+	}
+
+	private static int hash(final long key, final int mask)
+	{
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ h >>> 32) & mask;
+	}
+
+	/**
+	 * @param key the ISBN-13 key
+	 * @return the book with the given key or <code>null</code>
+	 */
+	Book get(final long key)
+	{
+		if(key == EMPTY)
+		{
+			return null;
+		}
+
+		final long[] keys = this.keys;
+		final int    mask = keys.length - 1;
+		for(int i = hash(key, mask); ; i = i + 1 & mask)
+		{
+			final long k = keys[i];
+			if(k == key)
+			{
+				return this.books[i];
+			}
+			if(k == EMPTY)
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * @param key the ISBN-13 key
+	 * @param book the book to add
+	 * @return the book previously associated with the key or <code>null</code>
+	 */
+	Book put(
+		final long key ,
+		final Book book
+	)
+	{
+		if(key == EMPTY)
+		{
+			throw new IllegalArgumentException("Invalid ISBN key");
+		}
+
+		if((this.size + 1) * 2 > this.keys.length)
+		{
+			this.rehash(this.keys.length * 2);
+		}
+
+		final long[] keys = this.keys;
+		final int    mask = keys.length - 1;
+		int i = hash(key, mask);
+		for(long k; (k = keys[i]) != EMPTY; i = i + 1 & mask)
+		{
+			if(k == key)
+			{
+				final Book old = this.books[i];
+				this.books[i] = book;
+				return old;
+			}
+		}
+		keys[i]       = key;
+		this.books[i] = book;
+		this.size++;
+		return null;
+	}
+
+	private void rehash(final int capacity)
+	{
+		final long[] oldKeys  = this.keys;
+		final Book[] oldBooks = this.books;
+		final long[] keys     = new long[capacity];
+		final Book[] books    = new Book[capacity];
+		final int    mask     = capacity - 1;
+		for(int o = 0; o < oldKeys.length; o++)
+		{
+			final long key = oldKeys[o];
+			if(key != EMPTY)
+			{
+				int i = hash(key, mask);
+				while(keys[i] != EMPTY)
+				{
+					i = i + 1 & mask;
+				}
+				keys[i]  = key;
+				books[i] = oldBooks[o];
+			}
+		}
+		this.keys  = keys;
+		this.books = books;
+	}
+
+	/**
+	 * @return the amount of books in this map
+	 */
+	int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Computes an order independent checksum of all keys in this map.
+	 *
+	 * @param fingerprint the function to compute the summand of a key
+	 * @return the sum of all key fingerprints
+	 */
+	long keyChecksum(final LongUnaryOperator fingerprint)
+	{
+		long checksum = 0L;
+		for(final long key : this.keys)
+		{
+			if(key != EMPTY)
+			{
+				checksum += fingerprint.applyAsLong(key);
+			}
+		}
+		return checksum;
+	}
+
+	/**
+	 * @return a {@link Stream} of all books in this map
+	 */
+	Stream<Book> stream()
+	{
+		return Arrays.stream(this.books).filter(Objects::nonNull);
+	}
+
+	/**
+	 * @param action the action to perform on every book in this map
+	 */
+	void forEach(final Consumer<? super Book> action)
+	{
+		for(final Book book : this.books)
+		{
+			if(book != null)
+			{
+				action.accept(book);
+			}
+		}
+	}
+
+	/**
+	 * Stores this map, including its internal arrays which are modified in place.
+	 *
+	 * @param persister the persister to store it with
+	 */
+	void store(final PersistenceStoring persister)
+	{
+		persister.storeAll(this, this.keys, this.books);
+	}
+
+}
@@ -15,6 +15,7 @@ package org.eclipse.store.demo.bookstore.data;
  * #L%
  */
 
+import static org.eclipse.store.demo.bookstore.util.InternUtils.intern;
 import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requireNonBlank;
 
 /**
@@ -29,7 +30,7 @@ public abstract class Named implements Comparable<Named>
 	{
 		super();
 		
-		this.name = requireNonBlank(name, () -> "Name cannot be empty");
+		this.name = intern(requireNonBlank(name, () -> "Name cannot be empty"));
 	}
 
 	/**
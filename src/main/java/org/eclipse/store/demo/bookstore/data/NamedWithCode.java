@@ -15,6 +15,8 @@ package org.eclipse.store.demo.bookstore.data;
  * #L%
  */
 
+import static org.eclipse.store.demo.bookstore.util.InternUtils.intern;
+
 /**
  * Feature type for all named entities with a code.
  *
@@ -30,7 +32,7 @@ public abstract class NamedWithCode extends Named
 	{
 		super(name);
 		
-		this.code = code;
+		this.code = intern(code);
 	}
 
 	/**
@@ -0,0 +1,298 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory prefix index for autocomplete suggestions.
+ * <p>
+ * Every word start of a suggestion's normalized text is a key in a character trie.
+ * The trie depth is limited, longer prefixes are resolved by checking the candidates of the deepest node.
+ * Every node knows the maximum weight of its subtree, so the top suggestions are found best-first,
+ * without visiting all matching entries.
+ * <p>
+ * Note that this class doesn't need to handle concurrency in any way,
+ * since it is only used by the {@link Books} implementation which handles thread safety.
+ */
+class PrefixSuggester
+{
+	/**
+	 * Maximum depth of the trie, longer prefixes are filtered.
+	 */
+	private final static int     MAX_DEPTH   = 12;
+	private final static char[]  NO_LABELS   = new char[0];
+	private final static Node[]  NO_CHILDREN = new Node[0];
+	private final static Entry[] NO_ENTRIES  = new Entry[0];
+
+	private static class Node
+	{
+		char[]  labels   = NO_LABELS  ;
+		Node[]  children = NO_CHILDREN;
+		Entry[] entries  = NO_ENTRIES ;
+		long    maxWeight;
+
+		Node child(final char c)
+		{
+			final int i = Arrays.binarySearch(this.labels, c);
+			return i >= 0
+				? this.children[i]
+				: null;
+		}
+
+		Node ensureChild(final char c)
+		{
+			int i = Arrays.binarySearch(this.labels, c);
+			if(i >= 0)
+			{
+				return this.children[i];
+			}
+
+			i = -i - 1;
+			final int    length   = this.labels.length;
+			final char[] labels   = new char[length + 1];
+			final Node[] children = new Node[length + 1];
+			System.arraycopy(this.labels  , 0, labels  , 0    , i         );
+			System.arraycopy(this.children, 0, children, 0    , i         );
+			System.arraycopy(this.labels  , i, labels  , i + 1, length - i);
+			System.arraycopy(this.children, i, children, i + 1, length - i);
+			labels[i]     = c;
+			children[i]   = new Node();
+			this.labels   = labels;
+			this.children = children;
+			return children[i];
+		}
+
+		void addEntry(final Entry entry)
+		{
+			final Entry[] entries = Arrays.copyOf(this.entries, this.entries.length + 1);
+			entries[entries.length - 1] = entry;
+			this.entries = entries;
+		}
+	}
+
+	private static class Entry
+	{
+		final String          text          ;
+		final String          normalizedText;
+		final Suggestion.Type type          ;
+		long                  weight        ;
+
+		Entry(
+			final String          text          ,
+			final String          normalizedText,
+			final Suggestion.Type type
+		)
+		{
+			super();
+			this.text           = text          ;
+			this.normalizedText = normalizedText;
+			this.type           = type          ;
+		}
+
+		boolean matches(final String normalizedPrefix)
+		{
+			final String text = this.normalizedText;
+			for(int i = 0; i >= 0; i = nextWordStart(text, i))
+			{
+				if(text.startsWith(normalizedPrefix, i))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+
+	private final Node               root    = new Node();
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	PrefixSuggester()
+	{
+		super();
+	}
+
+	/**
+	 * Adds a suggestion or increases the weight of an existing one.
+	 *
+	 * @param text the suggested text
+	 * @param type the attribute the text originates from
+	 * @param weight the weight to add
+	 */
+	void add(
+		final String          text  ,
+		final Suggestion.Type type  ,
+		final long            weight
+	)
+	{
+		final String normalizedText = normalize(text);
+		if(normalizedText.isEmpty())
+		{
+			return;
+		}
+
+		final String key   = type.ordinal() + ":" + text;
+		Entry        entry = this.entries.get(key);
+		final boolean isNew = entry == null;
+		if(isNew)
+		{
+			this.entries.put(key, entry = new Entry(text, normalizedText, type));
+		}
+		entry.weight += weight;
+
+		for(int i = 0; i >= 0; i = nextWordStart(normalizedText, i))
+		{
+			this.index(entry, i, isNew);
+		}
+	}
+
+	private void index(
+		final Entry   entry    ,
+		final int     start    ,
+		final boolean addEntry
+	)
+	{
+		final String text = entry.normalizedText;
+		final int    end  = Math.min(text.length(), start + MAX_DEPTH);
+		Node node = this.root;
+		node.maxWeight = Math.max(node.maxWeight, entry.weight);
+		for(int i = start; i < end; i++)
+		{
+			node = node.ensureChild(text.charAt(i));
+			node.maxWeight = Math.max(node.maxWeight, entry.weight);
+		}
+		if(addEntry)
+		{
+			node.addEntry(entry);
+		}
+	}
+
+	/**
+	 * Finds the top suggestions for a prefix.
+	 *
+	 * @param prefix the prefix typed by the user
+	 * @param maxResults maximum amount of suggestions
+	 * @return the suggestions, ordered by weight descending
+	 */
+	List<Suggestion> suggest(
+		final String prefix    ,
+		final int    maxResults
+	)
+	{
+		final String normalizedPrefix = normalize(prefix);
+		if(normalizedPrefix.isEmpty() || maxResults <= 0)
+		{
+			return Collections.emptyList();
+		}
+
+		Node node = this.root;
+		for(int i = 0, depth = Math.min(normalizedPrefix.length(), MAX_DEPTH); i < depth && node != null; i++)
+		{
+			node = node.child(normalizedPrefix.charAt(i));
+		}
+		if(node == null)
+		{
+			return Collections.emptyList();
+		}
+
+		final boolean          filter  = normalizedPrefix.length() > MAX_DEPTH;
+		final List<Suggestion> result  = new ArrayList<>(maxResults);
+		final Set<Entry>       emitted = Collections.newSetFromMap(new IdentityHashMap<>());
+		/*
+		 * Best-first search: nodes are ranked by the maximum weight of their subtree,
+		 * entries by their own weight, so entries are emitted in descending order.
+		 */
+		final PriorityQueue<Object> queue = new PriorityQueue<>(
+			(o1, o2) -> Long.compare(weight(o2), weight(o1))
+		);
+		queue.add(node);
+		Object next;
+		while(result.size() < maxResults && (next = queue.poll()) != null)
+		{
+			if(next instanceof Entry)
+			{
+				final Entry entry = (Entry)next;
+				if(emitted.add(entry) && (!filter || entry.matches(normalizedPrefix)))
+				{
+					result.add(new Suggestion(entry.text, entry.type, entry.weight));
+				}
+			}
+			else
+			{
+				final Node current = (Node)next;
+				Collections.addAll(queue, current.entries);
+				Collections.addAll(queue, current.children);
+			}
+		}
+		return result;
+	}
+
+	private static long weight(final Object nodeOrEntry)
+	{
+		return nodeOrEntry instanceof Entry
+			? ((Entry)nodeOrEntry).weight
+			: ((Node)nodeOrEntry).maxWeight;
+	}
+
+	/**
+	 * Lower cases the text and collapses everything besides letters and digits into single spaces.
+	 */
+	static String normalize(final String text)
+	{
+		if(text == null)
+		{
+			return "";
+		}
+
+		final StringBuilder builder = new StringBuilder(text.length());
+		boolean             space   = false;
+		for(int i = 0, length = text.length(); i < length; i++)
+		{
+			final char c = text.charAt(i);
+			if(Character.isLetterOrDigit(c))
+			{
+				if(space && builder.length() > 0)
+				{
+					builder.append(' ');
+				}
+				builder.append(Character.toLowerCase(c));
+				space = false;
+			}
+			else
+			{
+				space = true;
+			}
+		}
+		return builder.toString();
+	}
+
+	private static int nextWordStart(final String normalizedText, final int from)
+	{
+		final int space = normalizedText.indexOf(' ', from);
+		return space < 0
+			? -1
+			: space + 1;
+	}
+
+}
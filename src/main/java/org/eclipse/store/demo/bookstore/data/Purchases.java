@@ -40,6 +40,7 @@ import javax.money.MonetaryAmount;
 
 import org.eclipse.serializer.concurrency.StripeLockScope;
 import org.eclipse.serializer.persistence.types.PersistenceStoring;
+import org.eclipse.serializer.persistence.types.Storer;
 import org.eclipse.serializer.reference.Lazy;
 import org.eclipse.store.demo.bookstore.BookStoreDemo;
 import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
@@ -132,6 +133,52 @@ public class Purchases extends StripeLockScope
 			}
 		}
 
+		/**
+		 * Removes a purchase from all collections used by this class.
+		 *
+		 * @param purchase the purchase to remove
+		 */
+		void remove(
+			final Purchase           purchase,
+			final PersistenceStoring persister
+		)
+		{
+			final List<Object> changedObjects = new ArrayList<>();
+			removeFromMap(this.shopToPurchases,     purchase.shop(),     purchase, changedObjects);
+			removeFromMap(this.employeeToPurchases, purchase.employee(), purchase, changedObjects);
+			removeFromMap(this.customerToPurchases, purchase.customer(), purchase, changedObjects);
+			if(changedObjects.size() > 0)
+			{
+				persister.storeAll(changedObjects);
+			}
+		}
+
+		/**
+		 * Removes a purchase from a map with a list as values.
+		 *
+		 * @param <K> the key type
+		 * @param map the collection
+		 * @param key the key
+		 * @param purchase the purchase to remove
+		 */
+		private static <K> void removeFromMap(
+			final Map<K, Lazy<List<Purchase>>> map,
+			final K key,
+			final Purchase purchase,
+			final List<Object> changedObjects
+		)
+		{
+			final Lazy<List<Purchase>> lazy = map.get(key);
+			if(lazy != null)
+			{
+				final List<Purchase> list = lazy.get();
+				if(list.remove(purchase))
+				{
+					changedObjects.add(list);
+				}
+			}
+		}
+
 		/**
 		 * Clears all {@link Lazy} references used by this type
 		 */
@@ -298,6 +345,120 @@ public class Purchases extends StripeLockScope
 		});
 	}
 
+	/**
+	 * Adds a new purchase and removes the purchased books from the shop's {@link Inventory}.
+	 * Both are stored in one commit with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 *
+	 * @param purchase the new purchase
+	 * @throws IllegalStateException if the shop has not enough copies of a book in stock, nothing is changed then
+	 * @see #checkout(Purchase, PersistenceStoring)
+	 */
+	public void checkout(final Purchase purchase)
+	{
+		this.checkout(purchase, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Adds a new purchase and removes the purchased books from the shop's {@link Inventory},
+	 * and stores both in one commit with the given storage manager, all or none.
+	 * <p>
+	 * If the commit fails, the changes in memory are undone as well,
+	 * so that memory and storage stay in line.
+	 *
+	 * @param purchase the new purchase
+	 * @param storageManager the storage manager to commit it with
+	 * @throws IllegalStateException if the shop has not enough copies of a book in stock, nothing is changed then
+	 */
+	public void checkout(
+		final Purchase               purchase      ,
+		final EmbeddedStorageManager storageManager
+	)
+	{
+		final Storer storer = storageManager.createStorer();
+		this.checkout(purchase, storer);
+		try
+		{
+			storer.commit();
+		}
+		catch(final RuntimeException e)
+		{
+			/*
+			 * Commits are atomic, so the storage still holds the state before the checkout.
+			 * The changes in memory are undone with a storer which is not committed.
+			 */
+			try
+			{
+				this.undoCheckout(purchase, storageManager.createStorer());
+			}
+			catch(final RuntimeException undoFailure)
+			{
+				e.addSuppressed(undoFailure);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds a new purchase and removes the purchased books from the shop's {@link Inventory}, all or none.
+	 * Everything is stored with the given persister, which should be a {@link Storer} to commit it atomically.
+	 * <p>
+	 * If the given persister is a {@link Storer}, committing it is up to the caller,
+	 * who has to {@link #undoCheckout(Purchase, PersistenceStoring) undo} the checkout if the commit fails.
+	 *
+	 * @param purchase the new purchase
+	 * @param persister the persister to store it with
+	 * @throws IllegalStateException if the shop has not enough copies of a book in stock, nothing is changed then
+	 * @see Inventory#decrementAll(Map, PersistenceStoring)
+	 */
+	public void checkout(
+		final Purchase           purchase ,
+		final PersistenceStoring persister
+	)
+	{
+		purchase.shop().inventory().decrementAll(purchasedAmounts(purchase), persister);
+		try
+		{
+			this.add(purchase, persister);
+		}
+		catch(final RuntimeException e)
+		{
+			// the purchase may be added partially
+			this.undoCheckout(purchase, persister);
+			throw e;
+		}
+	}
+
+	/**
+	 * Reverts a {@link #checkout(Purchase, PersistenceStoring) checkout}: the purchase is removed
+	 * and the purchased books are put back into the shop's {@link Inventory}.
+	 *
+	 * @param purchase the purchase to revert
+	 * @param persister the persister to store the changes with
+	 */
+	public void undoCheckout(
+		final Purchase           purchase ,
+		final PersistenceStoring persister
+	)
+	{
+		final Integer year = purchase.timestamp().getYear();
+		this.write(year, () ->
+		{
+			final Lazy<YearlyPurchases> lazy = this.yearlyPurchases.get(year);
+			if(lazy != null)
+			{
+				lazy.get().remove(purchase, persister);
+			}
+		});
+		purchase.shop().inventory().incrementAll(purchasedAmounts(purchase), persister);
+	}
+
+	private static Map<Book, Integer> purchasedAmounts(final Purchase purchase)
+	{
+		return purchase.items().collect(
+			groupingBy(PurchaseItem::book, summingInt(PurchaseItem::amount))
+		);
+	}
+
 	/**
 	 * Gets the range of all years in which purchases were made.
 	 *
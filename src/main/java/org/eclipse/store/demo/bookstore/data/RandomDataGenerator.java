@@ -113,7 +113,7 @@ public class RandomDataGenerator implements HasLogger
 	private final Faker                  faker      = Faker.instance()     ;
 	private final LocalDate              today      = LocalDate.now();
 	private final AtomicInteger          customerId = new AtomicInteger(0) ;
-	private final Set<String>            usedIsbns  = new HashSet<>(4096)  ;
+	private final Set<Long>              usedIsbns  = new HashSet<>(4096)  ;
 	private final List<Book>             bookList   = new ArrayList<>(4096);
 
 	private final BigDecimal             minPrice   = new BigDecimal(5)                    ;
@@ -289,7 +289,7 @@ public class RandomDataGenerator implements HasLogger
 		String isbn;
 		synchronized(this.usedIsbns)
 		{
-			while(!this.usedIsbns.add(isbn = this.faker.code().isbn13(true)))
+			while(!this.usedIsbns.add(Book.isbn13Key(isbn = this.faker.code().isbn13(true))))
 			{
 				// empty loop
 			}
@@ -0,0 +1,85 @@
+
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+/**
+ * Snapshot of the usage statistics of a search result cache, see {@link Books#searchCacheMetrics()}.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ */
+public class SearchCacheMetrics
+{
+	private final long hitCount  ;
+	private final long missCount ;
+	private final int  entryCount;
+
+	public SearchCacheMetrics(
+		final long hitCount  ,
+		final long missCount ,
+		final int  entryCount
+	)
+	{
+		super();
+		this.hitCount   = hitCount  ;
+		this.missCount  = missCount ;
+		this.entryCount = entryCount;
+	}
+
+	/**
+	 * @return the amount of searches answered by the cache
+	 */
+	public long hitCount()
+	{
+		return this.hitCount;
+	}
+
+	/**
+	 * @return the amount of searches which had to query the index
+	 */
+	public long missCount()
+	{
+		return this.missCount;
+	}
+
+	/**
+	 * @return the amount of currently cached results
+	 */
+	public int entryCount()
+	{
+		return this.entryCount;
+	}
+
+	/**
+	 * @return the ratio of hits to all searches, between 0 and 1, or 0 if there were no searches yet
+	 */
+	public double hitRate()
+	{
+		final long requestCount = this.hitCount + this.missCount;
+		return requestCount == 0L
+			? 0.0
+			: (double)this.hitCount / requestCount;
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.hitCount    + " hits, "
+			+ this.missCount    + " misses ("
+			+ Math.round(this.hitRate() * 100.0) + "% hit rate), "
+			+ this.entryCount   + " entries";
+	}
+
+}
@@ -0,0 +1,131 @@
+
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.lucene.search.Query;
+
+/**
+ * View of one page of full text search results, see {@link Index#search(Query, String, int)}.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ *
+ * @param <T> the result type
+ */
+public class SearchPage<T>
+{
+	private final long                           totalHits ;
+	private final List<T>                        results   ;
+	private final String                         nextCursor;
+	private final Map<String, Map<String, Long>> facets    ;
+
+	/**
+	 * Constructor to create a new {@link SearchPage} instance without facets.
+	 *
+	 * @param totalHits the total amount of hits of the query, over all pages
+	 * @param results the results of this page, not <code>null</code>
+	 * @param nextCursor the cursor of the next page, <code>null</code> if this is the last page
+	 */
+	public SearchPage(
+		final long    totalHits ,
+		final List<T> results   ,
+		final String  nextCursor
+	)
+	{
+		this(totalHits, results, nextCursor, Collections.emptyMap());
+	}
+
+	/**
+	 * Constructor to create a new {@link SearchPage} instance.
+	 *
+	 * @param totalHits the total amount of hits of the query, over all pages
+	 * @param results the results of this page, not <code>null</code>
+	 * @param nextCursor the cursor of the next page, <code>null</code> if this is the last page
+	 * @param facets the value counts per facet field over all hits, not <code>null</code>
+	 */
+	public SearchPage(
+		final long                           totalHits ,
+		final List<T>                        results   ,
+		final String                         nextCursor,
+		final Map<String, Map<String, Long>> facets
+	)
+	{
+		super();
+
+		this.totalHits  = totalHits;
+		this.results    = Collections.unmodifiableList(Objects.requireNonNull(results, () -> "Results cannot be null"));
+		this.nextCursor = nextCursor;
+		this.facets     = Collections.unmodifiableMap(Objects.requireNonNull(facets, () -> "Facets cannot be null"));
+	}
+
+	/**
+	 * Get the total amount of hits of the query, over all pages
+	 *
+	 * @return the total hits
+	 */
+	public long totalHits()
+	{
+		return this.totalHits;
+	}
+
+	/**
+	 * Get the results of this page, ordered by relevance
+	 *
+	 * @return an unmodifiable list of results
+	 */
+	public List<T> results()
+	{
+		return this.results;
+	}
+
+	/**
+	 * Get the opaque cursor to fetch the next page with,
+	 * or <code>null</code> if this is the last page
+	 *
+	 * @return the next cursor
+	 */
+	public String nextCursor()
+	{
+		return this.nextCursor;
+	}
+
+	/**
+	 * Get the value counts of the requested facet fields, over all hits of the query.
+	 * The values of each field are ordered by count descending.
+	 *
+	 * @return an unmodifiable map of field name to value counts, empty if no facets were requested
+	 */
+	public Map<String, Map<String, Long>> facets()
+	{
+		return this.facets;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SearchPage"
+			+ " [totalHits="  + this.totalHits
+			+ ", results="    + this.results.size()
+			+ ", nextCursor=" + this.nextCursor
+			+ ", facets="     + this.facets.keySet()
+			+ "]";
+	}
+
+}
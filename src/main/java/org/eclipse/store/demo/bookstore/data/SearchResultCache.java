@@ -0,0 +1,180 @@
+
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded cache of full text search results, which holds the keys of the hits instead of the entities.
+ * <p>
+ * Every entry remembers the {@link Index#generation()} it was computed for, and is only used
+ * as long as the index generation stays the same. The least recently used entries are evicted.
+ * <p>
+ * This type is thread safe, since it is used by concurrent readers.
+ *
+ * @param <T> the entity type
+ */
+class SearchResultCache<T>
+{
+	private static class Entry
+	{
+		final long                           generation;
+		final long                           totalHits ;
+		final long[]                         keys      ;
+		final String                         nextCursor;
+		final Map<String, Map<String, Long>> facets    ;
+
+		Entry(
+			final long                           generation,
+			final long                           totalHits ,
+			final long[]                         keys      ,
+			final String                         nextCursor,
+			final Map<String, Map<String, Long>> facets
+		)
+		{
+			super();
+			this.generation = generation;
+			this.totalHits  = totalHits ;
+			this.keys       = keys      ;
+			this.nextCursor = nextCursor;
+			this.facets     = facets    ;
+		}
+	}
+
+
+	private final int                       maxResults ;
+	private final ToLongFunction<? super T> keyFunction;
+	private final Map<String, Entry>        entries    ;
+	private final LongAdder                 hitCount   = new LongAdder();
+	private final LongAdder                 missCount  = new LongAdder();
+
+	/**
+	 * @param maxEntries the maximum amount of cached results
+	 * @param maxResults the maximum amount of hits of a cached result, larger results are not cached
+	 * @param keyFunction computes the key of an entity, which is cached instead of the entity itself
+	 */
+	SearchResultCache(
+		final int                       maxEntries ,
+		final int                       maxResults ,
+		final ToLongFunction<? super T> keyFunction
+	)
+	{
+		super();
+		this.maxResults  = maxResults ;
+		this.keyFunction = keyFunction;
+		this.entries     = new LinkedHashMap<>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest)
+			{
+				return this.size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Gets a cached result.
+	 *
+	 * @param key the normalized query and paging parameters
+	 * @param generation the current generation of the index
+	 * @param resolver resolves the cached keys to entities
+	 * @return the cached page, or <code>null</code> if there is none for the given generation
+	 */
+	SearchPage<T> get(
+		final String          key       ,
+		final long            generation,
+		final LongFunction<T> resolver
+	)
+	{
+		final Entry entry;
+		synchronized(this.entries)
+		{
+			entry = this.entries.get(key);
+		}
+		if(entry == null || entry.generation != generation)
+		{
+			this.missCount.increment();
+			return null;
+		}
+
+		this.hitCount.increment();
+		final List<T> results = new ArrayList<>(entry.keys.length);
+		for(final long entityKey : entry.keys)
+		{
+			results.add(resolver.apply(entityKey));
+		}
+		return new SearchPage<>(entry.totalHits, results, entry.nextCursor, entry.facets);
+	}
+
+	/**
+	 * Caches a result, unless it has more hits than the maximum of this cache.
+	 *
+	 * @param key the normalized query and paging parameters
+	 * @param generation the generation of the index, which was read before searching
+	 * @param page the search result
+	 */
+	void put(
+		final String        key       ,
+		final long          generation,
+		final SearchPage<T> page
+	)
+	{
+		if(page.results().size() > this.maxResults)
+		{
+			return;
+		}
+
+		final long[] keys = page.results().stream()
+			.mapToLong(this.keyFunction)
+			.toArray();
+		final Entry entry = new Entry(generation, page.totalHits(), keys, page.nextCursor(), page.facets());
+		synchronized(this.entries)
+		{
+			this.entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * Removes all cached results, the statistics are kept.
+	 */
+	void clear()
+	{
+		synchronized(this.entries)
+		{
+			this.entries.clear();
+		}
+	}
+
+	/**
+	 * @return the current usage statistics
+	 */
+	SearchCacheMetrics metrics()
+	{
+		final int entryCount;
+		synchronized(this.entries)
+		{
+			entryCount = this.entries.size();
+		}
+		return new SearchCacheMetrics(this.hitCount.sum(), this.missCount.sum(), entryCount);
+	}
+
+}
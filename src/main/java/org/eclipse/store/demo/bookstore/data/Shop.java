@@ -33,6 +33,10 @@ public class Shop extends NamedWithAddress
 {
 	private final List<Employee>  employees;
 	private final Lazy<Inventory> inventory;
+	/*
+	 * Transient means it is not persisted by EclipseStore, it is bound by the Shops on load, see Shops#bind().
+	 */
+	private transient volatile Inventory.StockListener stockListener;
 	
 	/**
 	 * Constructor to create a new {@link Shop} instance.
@@ -94,7 +98,26 @@ public class Shop extends NamedWithAddress
 	 */
 	public Inventory inventory()
 	{
-		return this.inventory.get();
+		final Inventory               inventory     = this.inventory.get();
+		final Inventory.StockListener stockListener = this.stockListener;
+		if(stockListener != null)
+		{
+			inventory.bind(stockListener);
+		}
+		return inventory;
+	}
+
+	/**
+	 * Binds the listener which is notified after stock movements in the inventory of this shop,
+	 * used by {@link Shops}.
+	 */
+	void bind(final Inventory.StockListener stockListener)
+	{
+		this.stockListener = stockListener;
+		if(this.inventory.isLoaded())
+		{
+			this.inventory.get().bind(stockListener);
+		}
 	}
 
 	/**
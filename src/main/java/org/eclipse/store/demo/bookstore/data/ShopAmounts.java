@@ -0,0 +1,145 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Compact map of shops to amounts of one book, used by the stock index of {@link Shops}.
+ * <p>
+ * Shops are identified by their position in the shop list of {@link Shops}, which is append-only.
+ * The positions are held in a sorted array with a parallel array for the amounts,
+ * so there are neither boxed amounts nor entry objects, and the arrays are persisted as they are.
+ * Only shops with the book in stock are contained.
+ * <p>
+ * Note that this class doesn't need to handle concurrency in any way,
+ * since it is only used by the {@link Shops} implementation which handles thread safety.
+ */
+class ShopAmounts
+{
+	private int[] positions;
+	private int[] amounts  ;
+	private int   size     ;
+
+	ShopAmounts()
+	{
+		super();
+
+		this.positions = new int[4];
+		this.amounts   = new int[4];
+	}
+
+	/**
+	 * @return the amount of shops with the book in stock
+	 */
+	int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @param index the slot index
+	 * @return the position of the shop of the slot
+	 */
+	int position(final int index)
+	{
+		return this.positions[index];
+	}
+
+	/**
+	 * @param index the slot index
+	 * @return the positive amount of the slot
+	 */
+	int amount(final int index)
+	{
+		return this.amounts[index];
+	}
+
+	/**
+	 * Sets the amount of a shop, a shop with an amount of zero is removed.
+	 *
+	 * @param position the position of the shop
+	 * @param amount the new amount, zero or positive
+	 * @param changedObjects collects the objects which have to be stored
+	 * @return the previous amount, zero if the shop was not contained
+	 */
+	int put(
+		final int                position      ,
+		final int                amount        ,
+		final Collection<Object> changedObjects
+	)
+	{
+		final int index = Arrays.binarySearch(this.positions, 0, this.size, position);
+		if(index >= 0)
+		{
+			final int previous = this.amounts[index];
+			if(amount > 0)
+			{
+				this.amounts[index] = amount;
+				changedObjects.add(this.amounts);
+			}
+			else
+			{
+				this.remove(index, changedObjects);
+			}
+			return previous;
+		}
+
+		if(amount > 0)
+		{
+			this.insert(-index - 1, position, amount, changedObjects);
+		}
+		return 0;
+	}
+
+	private void insert(
+		final int                index         ,
+		final int                position      ,
+		final int                amount        ,
+		final Collection<Object> changedObjects
+	)
+	{
+		final int size = this.size;
+		if(size == this.positions.length)
+		{
+			final int capacity = size + (size >> 1) + 1;
+			this.positions = Arrays.copyOf(this.positions, capacity);
+			this.amounts   = Arrays.copyOf(this.amounts  , capacity);
+		}
+		System.arraycopy(this.positions, index, this.positions, index + 1, size - index);
+		System.arraycopy(this.amounts  , index, this.amounts  , index + 1, size - index);
+		this.positions[index] = position;
+		this.amounts[index]   = amount;
+		this.size++;
+		changedObjects.add(this);
+		changedObjects.add(this.positions);
+		changedObjects.add(this.amounts);
+	}
+
+	private void remove(
+		final int                index         ,
+		final Collection<Object> changedObjects
+	)
+	{
+		final int tail = --this.size - index;
+		System.arraycopy(this.positions, index + 1, this.positions, index, tail);
+		System.arraycopy(this.amounts  , index + 1, this.amounts  , index, tail);
+		changedObjects.add(this);
+		changedObjects.add(this.positions);
+		changedObjects.add(this.amounts);
+	}
+
+}
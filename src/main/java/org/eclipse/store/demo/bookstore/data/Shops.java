@@ -14,15 +14,44 @@ package org.eclipse.store.demo.bookstore.data;
  * #L%
  */
 
+import static org.eclipse.store.demo.bookstore.util.ValidationUtils.requirePositive;
+
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import javax.money.MonetaryAmount;
+
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.Query;
 import org.eclipse.serializer.concurrency.LockScope;
+import org.eclipse.serializer.exceptions.IORuntimeException;
 import org.eclipse.serializer.persistence.types.PersistenceStoring;
 import org.eclipse.store.demo.bookstore.BookStoreDemo;
+import org.eclipse.store.demo.bookstore.data.Index.DocumentPopulator;
+import org.eclipse.store.demo.bookstore.data.Index.EntityResolver;
 import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
 
 /**
@@ -37,10 +66,85 @@ import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
  */
 public class Shops extends LockScope
 {
+	/**
+	 * Accumulates inventory slots into a mutable result container,
+	 * see {@link Shops#aggregateInventory(Supplier, InventorySlotAccumulator, BiConsumer)}.
+	 *
+	 * @param <A> the result container type
+	 */
+	@FunctionalInterface
+	public static interface InventorySlotAccumulator<A>
+	{
+		/**
+		 * @param container the result container of the current thread
+		 * @param shop the shop of the slot
+		 * @param book the book of the slot
+		 * @param amount the positive amount of the book in the shop
+		 */
+		public void accept(A container, Shop shop, Book book, int amount);
+	}
+
+	/**
+	 * Gets notified when the amount of a book in a shop drops below a threshold,
+	 * see {@link Shops#addLowStockListener(int, LowStockListener)}.
+	 */
+	@FunctionalInterface
+	public static interface LowStockListener
+	{
+		/**
+		 * @param shop the shop of the slot
+		 * @param book the book of the slot
+		 * @param amount the new amount, zero if the book is sold out
+		 */
+		public void lowStock(Shop shop, Book book, int amount);
+	}
+
+	/**
+	 * Highest threshold supported by {@link #lowStock(int, int)}.
+	 */
+	public static final int LOW_STOCK_MAX_THRESHOLD = 10;
+
+
 	/**
 	 * Simple list to hold the shops.
 	 */
 	private final List<Shop> shops = new ArrayList<>(1024);
+	/**
+	 * Stock index: the positions of the shops in {@link #shops} and their amounts by book,
+	 * used by {@link #computeInventory(Book, Function)}.
+	 * It is maintained by the stock movements of the {@link Inventory}s, see {@link #bind()}.
+	 * Databases created without it get it on first use, see {@link #ensureStockIndex(PersistenceStoring)}.
+	 */
+	private Map<Book, ShopAmounts> bookStock;
+	/**
+	 * Lookup indexes used by {@link #ofName(String)}, {@link #ofCountry(String)} and {@link #countries()},
+	 * countries are keyed by their upper case code.
+	 * Databases created without them get them on first use, see {@link #ensureLookupIndexes(PersistenceStoring)}.
+	 */
+	private Map<String, Shop>        nameToShop    ;
+	private Map<String, Country>     codeToCountry ;
+	private Map<Country, List<Shop>> countryToShops;
+	/**
+	 * Full text index of names and addresses, used by {@link #searchByName(String, int)}
+	 * and {@link #searchByAddress(String, int)}.
+	 * Shops are identified by their position in {@link #shops}, which is append-only.
+	 */
+	/*
+	 * Transient means it is not persisted by EclipseStore, but created on demand.
+	 */
+	private transient volatile Index<Shop>        index        ;
+	/*
+	 * Concurrent, since the keys of the shops are looked up by the background indexer.
+	 * Shops don't override equals, so this is an identity map.
+	 * Created on demand, see #shopPositions().
+	 */
+	private transient volatile Map<Shop, Integer> shopPositions;
+	/**
+	 * Shops by book by amount of all slots with less than {@link #LOW_STOCK_MAX_THRESHOLD} copies,
+	 * used by {@link #lowStock(int, int)}. It is built from the stock index on first use.
+	 */
+	private transient NavigableMap<Integer, Map<Book, Set<Shop>>> lowStockIndex    ;
+	private transient Map<LowStockListener, Integer>              lowStockListeners;
 
 	public Shops()
 	{
@@ -61,6 +165,8 @@ public class Shops extends LockScope
 
 	/**
 	 * Adds a new shop and stores it with the given persister.
+	 * <p>
+	 * The shop is indexed for full text search in the background.
 	 *
 	 * @param shop the new shop
 	 * @param persister the persister to store it with
@@ -72,8 +178,7 @@ public class Shops extends LockScope
 	)
 	{
 		this.write(() -> {
-			this.shops.add(shop);
-			persister.store(this.shops);
+			this.addAndIndex(List.of(shop), persister);
 		});
 	}
 
@@ -91,6 +196,8 @@ public class Shops extends LockScope
 
 	/**
 	 * Adds a range of new shops and stores it with the given persister.
+	 * <p>
+	 * The shops are indexed for full text search in the background.
 	 *
 	 * @param shops the new shops
 	 * @param persister the persister to store them with
@@ -102,11 +209,152 @@ public class Shops extends LockScope
 	)
 	{
 		this.write(() -> {
-			this.shops.addAll(shops);
-			persister.store(this.shops);
+			this.addAndIndex(shops, persister);
 		});
 	}
 
+	/**
+	 * Must be called with a write lock.
+	 */
+	private void addAndIndex(
+		final Collection<? extends Shop> shops    ,
+		final PersistenceStoring         persister
+	)
+	{
+		final Map<Shop, Integer> shopPositions = this.shopPositions();
+		final int                fromPosition  = this.shops.size();
+		for(final Shop shop : shops)
+		{
+			final int position = this.shops.size();
+			shopPositions.put(shop, position);
+			this.shops.add(shop);
+			this.bind(position);
+		}
+		persister.store(this.shops);
+		this.addToLookupIndexes(shops, persister);
+		this.addToStockIndex(fromPosition, persister);
+
+		/*
+		 * The object graph is committed at this point,
+		 * an open full text index is fed afterwards by a background thread.
+		 * A closed one is checked against the shops when it is opened.
+		 */
+		final Index<Shop> index = this.index;
+		if(index != null)
+		{
+			index.addAllInBackground(shops);
+		}
+	}
+
+	/**
+	 * Gets the positions of the shops, which are built on first use after a load.
+	 * Must be called with at least a read lock.
+	 */
+	private Map<Shop, Integer> shopPositions()
+	{
+		Map<Shop, Integer> shopPositions = this.shopPositions;
+		if(shopPositions == null)
+		{
+			final int shopCount = this.shops.size();
+			shopPositions = new ConcurrentHashMap<>(shopCount);
+			for(int position = 0; position < shopCount; position++)
+			{
+				shopPositions.put(this.shops.get(position), position);
+			}
+			this.shopPositions = shopPositions;
+		}
+		return shopPositions;
+	}
+
+	/**
+	 * Must be called with a write lock.
+	 */
+	private void addToLookupIndexes(
+		final Collection<? extends Shop> shops    ,
+		final PersistenceStoring         persister
+	)
+	{
+		if(this.ensureLookupIndexes(persister))
+		{
+			// just built, including the given shops
+			return;
+		}
+
+		final Set<Object> changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+		shops.forEach(shop -> this.addToLookupIndexes(shop, changedObjects));
+		persister.storeAll(changedObjects);
+	}
+
+	/**
+	 * Must be called with a write lock.
+	 */
+	private void addToLookupIndexes(
+		final Shop        shop          ,
+		final Set<Object> changedObjects
+	)
+	{
+		// names are not unique, the first shop of a name wins
+		if(this.nameToShop.putIfAbsent(shop.name(), shop) == null)
+		{
+			changedObjects.add(this.nameToShop);
+		}
+
+		final Country country = shop.address().city().state().country();
+		final String  code    = normalizeCountryCode(country.code());
+		if(this.codeToCountry.putIfAbsent(code, country) == null)
+		{
+			changedObjects.add(this.codeToCountry);
+		}
+
+		List<Shop> countryShops = this.countryToShops.get(country);
+		if(countryShops == null)
+		{
+			this.countryToShops.put(country, countryShops = new ArrayList<>());
+			changedObjects.add(this.countryToShops);
+		}
+		countryShops.add(shop);
+		changedObjects.add(countryShops);
+	}
+
+	/**
+	 * Builds and stores the lookup indexes if they don't exist yet.
+	 * Must be called with a write lock.
+	 *
+	 * @return <code>true</code> if the indexes were built
+	 */
+	private boolean ensureLookupIndexes(final PersistenceStoring persister)
+	{
+		if(this.nameToShop != null)
+		{
+			return false;
+		}
+
+		this.nameToShop     = new HashMap<>(1024);
+		this.codeToCountry  = new HashMap<>();
+		this.countryToShops = new HashMap<>();
+		final Set<Object> changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+		this.shops.forEach(shop -> this.addToLookupIndexes(shop, changedObjects));
+		changedObjects.add(this);
+		persister.storeAll(changedObjects);
+		return true;
+	}
+
+	/**
+	 * Builds the lookup indexes of databases which were created without them, before they are read.
+	 */
+	private void ensureLookupIndexes()
+	{
+		if(this.read(() -> this.nameToShop == null))
+		{
+			this.write(() -> this.ensureLookupIndexes(BookStoreDemo.getInstance().storageManager()));
+		}
+	}
+
+	private static String normalizeCountryCode(final String code)
+	{
+		return code.toUpperCase(Locale.ROOT);
+	}
+
 	/**
 	 * Gets the total amount of all shops.
 	 *
@@ -181,6 +429,461 @@ public class Shops extends LockScope
 		);
 	}
 
+	/**
+	 * Aggregates the inventories of all shops, like a mutable reduction of {@link #computeInventory(Function)},
+	 * but without creating an {@link InventoryItem} or any other object per slot.
+	 * The shops are processed in parallel, every thread accumulates into its own container.
+	 *
+	 * @param <A> the result container type
+	 * @param supplier creates an empty result container
+	 * @param accumulator adds a slot to a result container
+	 * @param combiner merges the second result container into the first one
+	 * @return the aggregated result
+	 * @see Inventory#forEach(java.util.function.ObjIntConsumer)
+	 */
+	public <A> A aggregateInventory(
+		final Supplier<A>                 supplier   ,
+		final InventorySlotAccumulator<A> accumulator,
+		final BiConsumer<A, A>            combiner
+	)
+	{
+		return this.read(() ->
+			this.shops.parallelStream().collect(
+				supplier,
+				(container, shop) -> shop.inventory().forEach(
+					(book, amount) -> accumulator.accept(container, shop, book, amount)
+				),
+				combiner
+			)
+		);
+	}
+
+	/**
+	 * Gets the total amount of every book over all shops.
+	 *
+	 * @return the total amounts of all books in stock
+	 * @see #aggregateInventory(Supplier, InventorySlotAccumulator, BiConsumer)
+	 */
+	public Map<Book, Long> totalAmountByBook()
+	{
+		// one counter per book and thread, not per slot
+		final Map<Book, long[]> totals = this.aggregateInventory(
+			HashMap::new,
+			(counters, shop, book, amount) -> counters.computeIfAbsent(book, b -> new long[1])[0] += amount,
+			(counters1, counters2) -> counters2.forEach(
+				(book, total) -> counters1.computeIfAbsent(book, b -> new long[1])[0] += total[0]
+			)
+		);
+		final Map<Book, Long> result = new HashMap<>(totals.size());
+		totals.forEach((book, total) -> result.put(book, total[0]));
+		return result;
+	}
+
+	/**
+	 * Gets the retail value of the inventory of every shop with books in stock.
+	 *
+	 * @return the stock values by shop
+	 * @see #aggregateInventory(Supplier, InventorySlotAccumulator, BiConsumer)
+	 */
+	public Map<Shop, MonetaryAmount> stockValueByShop()
+	{
+		// prices are converted once per book, not per slot
+		final Map<Book, Long>   unitPrices = new ConcurrentHashMap<>();
+		final Map<Shop, long[]> values     = this.aggregateInventory(
+			HashMap::new,
+			(counters, shop, book, amount) -> counters.computeIfAbsent(shop, s -> new long[1])[0] +=
+				amount * unitPrices.computeIfAbsent(book, b -> Books.minorUnits(b.retailPrice())),
+			// every shop is processed by one thread only
+			Map::putAll
+		);
+		final int                       fractionDigits = BookStoreDemo.CURRENCY_UNIT.getDefaultFractionDigits();
+		final Map<Shop, MonetaryAmount> result         = new HashMap<>(values.size());
+		values.forEach((shop, value) ->
+			result.put(shop, BookStoreDemo.money(BigDecimal.valueOf(value[0], fractionDigits)))
+		);
+		return result;
+	}
+
+	/**
+	 * Executes a function with a {@link Stream} of the {@link InventoryItem}s of a specific book,
+	 * one per shop which has it in stock, and returns the computed value.
+	 * <p>
+	 * Only the stock index is used, the inventories of the shops are not loaded.
+	 *
+	 * @param <T> the return type
+	 * @param book the book to get the stock of
+	 * @param function computing function
+	 * @return the computed result
+	 */
+	public <T> T computeInventory(
+		final Book                               book    ,
+		final Function<Stream<InventoryItem>, T> function
+	)
+	{
+		if(this.read(() -> this.bookStock == null))
+		{
+			this.write(() -> this.ensureStockIndex(BookStoreDemo.getInstance().storageManager()));
+		}
+
+		return this.read(() ->
+		{
+			final ShopAmounts stock = this.bookStock.get(book);
+			return function.apply(
+				stock == null
+					? Stream.empty()
+					: IntStream.range(0, stock.size())
+						.mapToObj(i -> new InventoryItem(this.shops.get(stock.position(i)), book, stock.amount(i)))
+			);
+		});
+	}
+
+	/**
+	 * Binds the stock listeners of all shops, which maintain the stock index.
+	 * This has to be done once after the shops were loaded, since the listeners are not persisted,
+	 * see {@link Data#initialize(PersistenceStoring)}. Added shops are bound right away.
+	 */
+	void bind()
+	{
+		this.read(() ->
+		{
+			for(int position = 0, size = this.shops.size(); position < size; position++)
+			{
+				this.bind(position);
+			}
+		});
+	}
+
+	/**
+	 * Must be called with at least a read lock.
+	 */
+	private void bind(final int position)
+	{
+		this.shops.get(position).bind(
+			(books, persister) -> this.updateStockIndex(position, books, persister)
+		);
+	}
+
+	/**
+	 * Updates the stock index after stock movements in a shop's inventory.
+	 * The current amounts are read from the inventory, so the index is right
+	 * even if concurrent updates of the same books arrive out of order.
+	 *
+	 * @param position the position of the shop whose inventory changed
+	 * @param books the books with changed amounts
+	 * @param persister the persister to store the index with
+	 */
+	private void updateStockIndex(
+		final int                position ,
+		final Collection<Book>   books    ,
+		final PersistenceStoring persister
+	)
+	{
+		final List<Runnable> lowStockNotifications = this.write(() ->
+		{
+			if(this.ensureStockIndex(persister))
+			{
+				// just built with the current amounts
+				return List.<Runnable>of();
+			}
+
+			final Shop           shop           = this.shops.get(position);
+			final Inventory      inventory      = shop.inventory();
+			final Set<Object>    changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+			final List<Runnable> notifications  = new ArrayList<>();
+			for(final Book book : books)
+			{
+				final int amount   = inventory.amount(book);
+				final int previous = this.updateStockIndex(position, book, amount, changedObjects);
+				this.collectLowStockNotifications(shop, book, previous, amount, notifications);
+			}
+			persister.storeAll(changedObjects);
+			return notifications;
+		});
+
+		// listeners are called without holding the lock
+		lowStockNotifications.forEach(Runnable::run);
+	}
+
+	/**
+	 * Must be called with a write lock.
+	 */
+	private void collectLowStockNotifications(
+		final Shop           shop         ,
+		final Book           book         ,
+		final int            previous     ,
+		final int            amount       ,
+		final List<Runnable> notifications
+	)
+	{
+		if(this.lowStockListeners == null || amount >= previous)
+		{
+			return;
+		}
+
+		this.lowStockListeners.forEach((listener, threshold) ->
+		{
+			if(previous >= threshold && amount < threshold)
+			{
+				notifications.add(() -> listener.lowStock(shop, book, amount));
+			}
+		});
+	}
+
+	/**
+	 * Adds the shops from the given position on to the stock index. Must be called with a write lock.
+	 */
+	private void addToStockIndex(
+		final int                fromPosition,
+		final PersistenceStoring persister
+	)
+	{
+		if(this.ensureStockIndex(persister))
+		{
+			// just built, including the given shops
+			return;
+		}
+
+		final Set<Object> changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+		for(int position = fromPosition, size = this.shops.size(); position < size; position++)
+		{
+			this.addToStockIndex(position, changedObjects);
+		}
+		persister.storeAll(changedObjects);
+	}
+
+	/**
+	 * Must be called with a write lock.
+	 */
+	private void addToStockIndex(
+		final int         position      ,
+		final Set<Object> changedObjects
+	)
+	{
+		this.shops.get(position).inventory().forEach((book, amount) ->
+			this.updateStockIndex(position, book, amount, changedObjects)
+		);
+	}
+
+	/**
+	 * Must be called with a write lock.
+	 *
+	 * @return the previous amount
+	 */
+	private int updateStockIndex(
+		final int         position      ,
+		final Book        book          ,
+		final int         amount        ,
+		final Set<Object> changedObjects
+	)
+	{
+		ShopAmounts stock = this.bookStock.get(book);
+		if(stock == null)
+		{
+			if(amount <= 0)
+			{
+				return 0;
+			}
+			this.bookStock.put(book, stock = new ShopAmounts());
+			changedObjects.add(this.bookStock);
+		}
+
+		final int previous = stock.put(position, amount, changedObjects);
+		if(stock.size() == 0)
+		{
+			this.bookStock.remove(book);
+			changedObjects.add(this.bookStock);
+		}
+
+		if(previous != amount && this.lowStockIndex != null)
+		{
+			final Shop shop = this.shops.get(position);
+			this.removeFromLowStockIndex(shop, book, previous);
+			this.addToLowStockIndex(shop, book, amount);
+		}
+		return previous;
+	}
+
+	/**
+	 * Builds and stores the stock index if it doesn't exist yet, which loads all inventories once.
+	 * Must be called with a write lock.
+	 *
+	 * @return <code>true</code> if the index was built
+	 */
+	private boolean ensureStockIndex(final PersistenceStoring persister)
+	{
+		if(this.bookStock != null)
+		{
+			return false;
+		}
+
+		this.bookStock = new HashMap<>();
+		final Set<Object> changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+		for(int position = 0, size = this.shops.size(); position < size; position++)
+		{
+			this.addToStockIndex(position, changedObjects);
+		}
+		changedObjects.add(this);
+		persister.storeAll(changedObjects);
+		return true;
+	}
+
+	/**
+	 * Gets the inventory slots with less than <code>threshold</code> copies in stock, lowest amounts first.
+	 * Sold out books are not included, since they are no longer part of the stock index.
+	 * <p>
+	 * Only the low stock index is used, neither the inventories nor the whole stock index are scanned.
+	 *
+	 * @param threshold the exclusive upper bound of the amount, at most {@link #LOW_STOCK_MAX_THRESHOLD}
+	 * @param limit the maximum amount of returned items
+	 * @return the matching inventory items
+	 */
+	public List<InventoryItem> lowStock(
+		final int threshold,
+		final int limit
+	)
+	{
+		requirePositive(threshold, () -> "Threshold must be greater than zero");
+		requirePositive(limit, () -> "Limit must be greater than zero");
+		if(threshold > LOW_STOCK_MAX_THRESHOLD)
+		{
+			throw new IllegalArgumentException("Threshold must not be greater than " + LOW_STOCK_MAX_THRESHOLD);
+		}
+
+		if(this.read(() -> this.lowStockIndex == null))
+		{
+			this.write(() -> this.ensureLowStockIndex(BookStoreDemo.getInstance().storageManager()));
+		}
+
+		return this.read(() ->
+		{
+			final List<InventoryItem> result = new ArrayList<>(Math.min(limit, 1024));
+			for(final Map.Entry<Integer, Map<Book, Set<Shop>>> level : this.lowStockIndex.headMap(threshold).entrySet())
+			{
+				for(final Map.Entry<Book, Set<Shop>> slots : level.getValue().entrySet())
+				{
+					for(final Shop shop : slots.getValue())
+					{
+						if(result.size() >= limit)
+						{
+							return result;
+						}
+						result.add(new InventoryItem(shop, slots.getKey(), level.getKey()));
+					}
+				}
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Registers a listener which is notified when the amount of a book in a shop
+	 * drops below the given threshold. Listeners are called after the stock index is updated,
+	 * in the thread which changed the inventory and without holding any lock.
+	 * <p>
+	 * Listeners are not persisted and have to be registered again after a restart.
+	 *
+	 * @param threshold the amount to watch, the listener is called when it is undercut
+	 * @param listener the listener to add
+	 */
+	public void addLowStockListener(
+		final int              threshold,
+		final LowStockListener listener
+	)
+	{
+		requirePositive(threshold, () -> "Threshold must be greater than zero");
+		Objects.requireNonNull(listener, () -> "Listener cannot be null");
+
+		this.write(() ->
+		{
+			if(this.lowStockListeners == null)
+			{
+				this.lowStockListeners = new LinkedHashMap<>();
+			}
+			this.lowStockListeners.put(listener, threshold);
+		});
+	}
+
+	/**
+	 * Removes a listener which was registered with {@link #addLowStockListener(int, LowStockListener)}.
+	 *
+	 * @param listener the listener to remove
+	 */
+	public void removeLowStockListener(final LowStockListener listener)
+	{
+		this.write(() ->
+		{
+			if(this.lowStockListeners != null)
+			{
+				this.lowStockListeners.remove(listener);
+			}
+		});
+	}
+
+	/**
+	 * Builds the low stock index from the stock index if it doesn't exist yet.
+	 * Must be called with a write lock.
+	 */
+	private void ensureLowStockIndex(final PersistenceStoring persister)
+	{
+		if(this.lowStockIndex != null)
+		{
+			return;
+		}
+
+		this.ensureStockIndex(persister);
+		this.lowStockIndex = new TreeMap<>();
+		this.bookStock.forEach((book, stock) ->
+		{
+			for(int i = 0, size = stock.size(); i < size; i++)
+			{
+				this.addToLowStockIndex(this.shops.get(stock.position(i)), book, stock.amount(i));
+			}
+		});
+	}
+
+	/**
+	 * Must be called with a write lock.
+	 */
+	private void addToLowStockIndex(
+		final Shop shop  ,
+		final Book book  ,
+		final int  amount
+	)
+	{
+		if(amount > 0 && amount < LOW_STOCK_MAX_THRESHOLD)
+		{
+			this.lowStockIndex
+				.computeIfAbsent(amount, a -> new HashMap<>())
+				.computeIfAbsent(book, b -> new HashSet<>())
+				.add(shop);
+		}
+	}
+
+	/**
+	 * Must be called with a write lock.
+	 */
+	private void removeFromLowStockIndex(
+		final Shop shop  ,
+		final Book book  ,
+		final int  amount
+	)
+	{
+		final Map<Book, Set<Shop>> level = this.lowStockIndex.get(amount);
+		if(level == null)
+		{
+			return;
+		}
+		final Set<Shop> shops = level.get(book);
+		if(shops != null && shops.remove(shop) && shops.isEmpty())
+		{
+			level.remove(book);
+			if(level.isEmpty())
+			{
+				this.lowStockIndex.remove(amount);
+			}
+		}
+	}
+
 	/**
 	 * Gets the shop with a specific name or <code>null</code> if none was found.
 	 *
@@ -189,12 +892,253 @@ public class Shops extends LockScope
 	 */
 	public Shop ofName(final String name)
 	{
+		this.ensureLookupIndexes();
 		return this.read(() ->
-			this.shops.stream()
-				.filter(shop -> shop.name().equals(name))
-				.findAny()
-				.orElse(null)
+			this.nameToShop.get(name)
+		);
+	}
+
+	/**
+	 * Gets all shops in a specific country.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param countryCode the ISO 3166 2-letter code of the country, case insensitive
+	 * @return the shops in the country, or an empty list
+	 */
+	public List<Shop> ofCountry(final String countryCode)
+	{
+		this.ensureLookupIndexes();
+		return this.read(() ->
+		{
+			final Country    country = this.codeToCountry.get(normalizeCountryCode(countryCode));
+			final List<Shop> shops   = country == null
+				? null
+				: this.countryToShops.get(country);
+			return shops == null
+				? new ArrayList<>()
+				: new ArrayList<>(shops);
+		});
+	}
+
+	/**
+	 * Gets the country with a specific code, if there is at least one shop in it.
+	 *
+	 * @param countryCode the ISO 3166 2-letter code of the country, case insensitive
+	 * @return the matching country or <code>null</code>
+	 */
+	public Country countryOfCode(final String countryCode)
+	{
+		this.ensureLookupIndexes();
+		return this.read(() ->
+			this.codeToCountry.get(normalizeCountryCode(countryCode))
+		);
+	}
+
+	/**
+	 * Gets all countries with at least one shop.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @return all countries with shops
+	 */
+	public List<Country> countries()
+	{
+		this.ensureLookupIndexes();
+		return this.read(() ->
+			new ArrayList<>(this.codeToCountry.values())
+		);
+	}
+
+	/**
+	 * Searches shops by name. All words of the query have to match.
+	 *
+	 * @param queryText the search query
+	 * @param maxResults maximum number of results
+	 * @return a list of shops matching the query, ordered by relevance, or an empty list
+	 */
+	public List<Shop> searchByName(
+		final String queryText ,
+		final int    maxResults
+	)
+	{
+		return this.search("name", queryText, maxResults);
+	}
+
+	/**
+	 * Searches shops by address, including zip code, city, state and country.
+	 * All words of the query have to match.
+	 *
+	 * @param queryText the search query
+	 * @param maxResults maximum number of results
+	 * @return a list of shops matching the query, ordered by relevance, or an empty list
+	 */
+	public List<Shop> searchByAddress(
+		final String queryText ,
+		final int    maxResults
+	)
+	{
+		return this.search("address", queryText, maxResults);
+	}
+
+	private List<Shop> search(
+		final String field     ,
+		final String queryText ,
+		final int    maxResults
+	)
+	{
+		requirePositive(maxResults, () -> "Max results must be greater than zero");
+
+		final Index<Shop> index = this.ensureIndex();
+		final Query       query = index.queryBuilder().createBooleanQuery(field, queryText, Occur.MUST);
+		// null if the analyzer yields no terms
+		return query == null
+			? new ArrayList<>()
+			: index.search(query, maxResults);
+	}
+
+	/**
+	 * Lazy initializes the full text search index, which is done by searches only, never by writes.
+	 * If the initialization is interrupted, the index is not published and the next call tries again.
+	 *
+	 * @throws CancellationException if the current thread was interrupted while the index was rebuilt
+	 */
+	private Index<Shop> ensureIndex()
+	{
+		/*
+		 * Double-checked locking to reduce the overhead of acquiring a lock
+		 * by testing the locking criterion.
+		 * The field (this.index) has to be volatile.
+		 */
+		Index<Shop> index = this.index;
+		if(index == null)
+		{
+			synchronized(this)
+			{
+				if((index = this.index) == null)
+				{
+					// published by createIndex
+					index = this.createIndex();
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Creates the Lucene index used for full text search,
+	 * and rebuilds it if it doesn't match the stored shops.
+	 */
+	private Index<Shop> createIndex()
+	{
+		final DocumentPopulator<Shop> documentPopulator = (document, shop) -> {
+			document.add(new TextField("name", shop.name(), Store.NO));
+			document.add(new TextField("address", shop.address().fullText(), Store.NO));
+		};
+
+		/*
+		 * Hits are resolved by their position in the shop list under the read lock of this instance,
+		 * without any stored field lookups.
+		 */
+		final EntityResolver<Shop> entityResolver = new EntityResolver<Shop>()
+		{
+			@Override
+			public long key(final Shop shop)
+			{
+				return Shops.this.shopPositions.get(shop);
+			}
+
+			@Override
+			public List<Shop> resolve(final long[] keys)
+			{
+				return Shops.this.read(() ->
+				{
+					final List<Shop> shops = new ArrayList<>(keys.length);
+					for(final long key : keys)
+					{
+						if(key < Shops.this.shops.size())
+						{
+							shops.add(Shops.this.shops.get((int)key));
+						}
+					}
+					return shops;
+				});
+			}
+		};
+
+		final BookStoreDemo      demo          = BookStoreDemo.getInstance();
+		final IndexConfiguration configuration = demo != null
+			? demo.indexConfiguration()
+			: IndexConfiguration.Default()
+		;
+
+		final Index<Shop> index = new Index<>(
+			Shop.class,
+			documentPopulator,
+			entityResolver,
+			configuration
 		);
+
+		try
+		{
+			this.read(() ->
+			{
+				// the positions are needed by the entity resolver's keys
+				this.shopPositions();
+				final int shopCount = this.shops.size();
+				long      checksum  = 0L;
+				for(int position = 0; position < shopCount; position++)
+				{
+					checksum += Index.fingerprint(position);
+				}
+
+				if(!index.isConsistentWith(shopCount, checksum))
+				{
+					try
+					{
+						index.rebuild(this.shops, null);
+						index.markConsistent(shopCount, checksum);
+					}
+					catch(final InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						throw new CancellationException("Initialization of the shop index was interrupted");
+					}
+				}
+				// published under the read lock, so writes are either part of the checked data or feed the index
+				this.index = index;
+			});
+		}
+		catch(final RuntimeException e)
+		{
+			// the partially written index is not published, the next access initializes it again
+			index.closeAfterFailure(e);
+			throw e;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Closes the full text search index, if it was initialized, committing all pending changes.
+	 * It is lazily reopened on the next access.
+	 */
+	public void closeIndex()
+	{
+		synchronized(this)
+		{
+			final Index<Shop> index = this.index;
+			if(index != null)
+			{
+				this.index = null;
+				try
+				{
+					index.close();
+				}
+				catch(final IOException e)
+				{
+					throw new IORuntimeException(e);
+				}
+			}
+		}
 	}
 
 }
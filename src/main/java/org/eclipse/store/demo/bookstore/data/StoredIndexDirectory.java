@@ -0,0 +1,271 @@
+
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.BaseDirectory;
+import org.apache.lucene.store.ByteBuffersDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.store.ByteBuffersIndexInput;
+import org.apache.lucene.store.ByteBuffersIndexOutput;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.SingleInstanceLockFactory;
+import org.eclipse.serializer.persistence.types.Storer;
+import org.eclipse.serializer.reference.Lazy;
+import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
+
+/**
+ * Lucene {@link org.apache.lucene.store.Directory} which keeps its files as lazily loaded blobs
+ * in the EclipseStore object graph.
+ * <p>
+ * Written files are held in memory until Lucene commits, which renames the pending segments file.
+ * At this point the files of the commit are stored in one storer commit of their own,
+ * so the persisted index is always a complete Lucene commit. Flushed but uncommitted segments are not stored.
+ * The storer commit is not part of the transactions of the object graph, indexes have to be
+ * reconciled with their source data on startup, as with any other directory.
+ * Files of older commits are released by the storage's garbage collector.
+ * <p>
+ * Files are loaded as a whole into the heap when they are opened, so this directory is meant for small
+ * to medium indexes, which should share the storage and the backup with the object graph.
+ * <p>
+ * All operations on this type are thread safe.
+ *
+ * @see IndexDirectoryProvider#Storage(EmbeddedStorageManager, Data)
+ */
+class StoredIndexDirectory extends BaseDirectory
+{
+	private final Map<String, Lazy<byte[]>>               storedFiles   ;
+	private final EmbeddedStorageManager                  storageManager;
+	private final ConcurrentHashMap<String, Lazy<byte[]>> files         = new ConcurrentHashMap<>();
+	private final AtomicLong                              tempFileCount = new AtomicLong();
+
+	/**
+	 * @param storedFiles the persisted files of this directory
+	 * @param storageManager the storage manager to store the files with
+	 */
+	StoredIndexDirectory(
+		final Map<String, Lazy<byte[]>> storedFiles   ,
+		final EmbeddedStorageManager    storageManager
+	)
+	{
+		super(new SingleInstanceLockFactory());
+		this.storedFiles    = storedFiles;
+		this.storageManager = storageManager;
+		synchronized(storedFiles)
+		{
+			this.files.putAll(storedFiles);
+		}
+	}
+
+	@Override
+	public String[] listAll() throws IOException
+	{
+		this.ensureOpen();
+
+		// Lucene expects the names to be sorted
+		return this.files.keySet().stream()
+			.sorted()
+			.toArray(String[]::new);
+	}
+
+	@Override
+	public void deleteFile(final String name) throws IOException
+	{
+		this.ensureOpen();
+
+		if(this.files.remove(name) == null)
+		{
+			throw new NoSuchFileException(name);
+		}
+	}
+
+	@Override
+	public long fileLength(final String name) throws IOException
+	{
+		this.ensureOpen();
+
+		return this.content(name).length;
+	}
+
+	@Override
+	public IndexOutput createOutput(
+		final String    name   ,
+		final IOContext context
+	)
+		throws IOException
+	{
+		this.ensureOpen();
+
+		if(this.files.containsKey(name))
+		{
+			throw new FileAlreadyExistsException(name);
+		}
+
+		return new ByteBuffersIndexOutput(
+			new ByteBuffersDataOutput(),
+			"StoredIndexOutput(name=\"" + name + "\")",
+			name,
+			new CRC32(),
+			output -> this.files.put(name, Lazy.Reference(output.toArrayCopy()))
+		);
+	}
+
+	@Override
+	public IndexOutput createTempOutput(
+		final String    prefix ,
+		final String    suffix ,
+		final IOContext context
+	)
+		throws IOException
+	{
+		this.ensureOpen();
+
+		while(true)
+		{
+			final String name = IndexFileNames.segmentFileName(
+				prefix,
+				suffix + "_" + Long.toString(this.tempFileCount.getAndIncrement(), Character.MAX_RADIX),
+				"tmp"
+			);
+			if(!this.files.containsKey(name))
+			{
+				return this.createOutput(name, context);
+			}
+		}
+	}
+
+	@Override
+	public void sync(final Collection<String> names) throws IOException
+	{
+		this.ensureOpen();
+
+		// files are made durable together with the commit, see #rename(String, String)
+	}
+
+	@Override
+	public void syncMetaData() throws IOException
+	{
+		this.ensureOpen();
+
+		// the file set is made durable together with the commit, see #rename(String, String)
+	}
+
+	@Override
+	public void rename(
+		final String source,
+		final String dest
+	)
+		throws IOException
+	{
+		this.ensureOpen();
+
+		final Lazy<byte[]> file = this.files.remove(source);
+		if(file == null)
+		{
+			throw new NoSuchFileException(source);
+		}
+		this.files.put(dest, file);
+
+		// renaming the pending segments file is Lucene's commit point
+		if(dest.startsWith(IndexFileNames.SEGMENTS))
+		{
+			this.storeCommit(dest);
+		}
+	}
+
+	@Override
+	public IndexInput openInput(
+		final String    name   ,
+		final IOContext context
+	)
+		throws IOException
+	{
+		this.ensureOpen();
+
+		return new ByteBuffersIndexInput(
+			new ByteBuffersDataInput(List.of(ByteBuffer.wrap(this.content(name)))),
+			"StoredIndexInput(name=\"" + name + "\")"
+		);
+	}
+
+	@Override
+	public Set<String> getPendingDeletions() throws IOException
+	{
+		return Collections.emptySet();
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		// the last commit is already stored
+		this.isOpen = false;
+	}
+
+	private byte[] content(final String name) throws IOException
+	{
+		final Lazy<byte[]> file = this.files.get(name);
+		if(file == null)
+		{
+			throw new FileNotFoundException(name);
+		}
+		return file.get();
+	}
+
+	/**
+	 * Replaces the persisted file set with the files of a Lucene commit, in a single storer commit.
+	 *
+	 * @param segmentsFileName the segments file of the commit
+	 */
+	private void storeCommit(final String segmentsFileName) throws IOException
+	{
+		final Collection<String> committedFiles = SegmentInfos.readCommit(this, segmentsFileName).files(true);
+		synchronized(this.storedFiles)
+		{
+			this.storedFiles.clear();
+			for(final String name : committedFiles)
+			{
+				final Lazy<byte[]> file = this.files.get(name);
+				if(file == null)
+				{
+					throw new NoSuchFileException(name);
+				}
+				this.storedFiles.put(name, file);
+			}
+
+			final Storer storer = this.storageManager.createStorer();
+			storer.store(this.storedFiles);
+			storer.commit();
+		}
+	}
+
+}
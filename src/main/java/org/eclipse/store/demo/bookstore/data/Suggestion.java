@@ -0,0 +1,102 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.util.Objects;
+
+/**
+ * View of an autocomplete suggestion, see {@link Books#suggest(String, int)}.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ *
+ */
+public class Suggestion
+{
+	/**
+	 * The attribute a suggestion originates from.
+	 */
+	public static enum Type
+	{
+		TITLE,
+		AUTHOR,
+		PUBLISHER
+	}
+
+
+	private final String text  ;
+	private final Type   type  ;
+	private final long   weight;
+
+	/**
+	 * Constructor to create a new {@link Suggestion} instance.
+	 *
+	 * @param text not <code>null</code>
+	 * @param type not <code>null</code>
+	 * @param weight the weight used for ranking
+	 */
+	public Suggestion(
+		final String text  ,
+		final Type   type  ,
+		final long   weight
+	)
+	{
+		super();
+
+		this.text   = Objects.requireNonNull(text, () -> "Text cannot be null");
+		this.type   = Objects.requireNonNull(type, () -> "Type cannot be null");
+		this.weight = weight;
+	}
+
+	/**
+	 * Get the suggested text
+	 *
+	 * @return the text
+	 */
+	public String text()
+	{
+		return this.text;
+	}
+
+	/**
+	 * Get the attribute this suggestion originates from
+	 *
+	 * @return the type
+	 */
+	public Type type()
+	{
+		return this.type;
+	}
+
+	/**
+	 * Get the weight of this suggestion, higher weights are ranked first
+	 *
+	 * @return the weight
+	 */
+	public long weight()
+	{
+		return this.weight;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Suggestion"
+			+ " [text="   + this.text
+			+ ", type="   + this.type
+			+ ", weight=" + this.weight
+			+ "]";
+	}
+
+}
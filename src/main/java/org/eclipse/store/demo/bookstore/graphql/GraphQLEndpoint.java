@@ -17,9 +17,11 @@ package org.eclipse.store.demo.bookstore.graphql;
 import org.eclipse.store.demo.bookstore.BookStoreDemo;
 import org.eclipse.store.demo.bookstore.data.Book;
 import org.eclipse.store.demo.bookstore.data.BookSales;
+import org.eclipse.store.demo.bookstore.data.Books;
 import org.eclipse.store.demo.bookstore.data.Country;
 import org.eclipse.store.demo.bookstore.data.Employee;
 import org.eclipse.store.demo.bookstore.data.Purchase;
+import org.eclipse.store.demo.bookstore.data.SearchPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
@@ -35,13 +37,7 @@ public class GraphQLEndpoint {
 
 	private Country countryByCode(final String countryCode)
 	{
-		return this.bookStoreDemo.data().shops().compute(shops ->
-			shops
-				.map(s -> s.address().city().state().country())
-				.filter(c -> c.code().equalsIgnoreCase(countryCode))
-				.findAny()
-				.orElse(null)
-		);
+		return this.bookStoreDemo.data().shops().countryOfCode(countryCode);
 	}
 
 	@QueryMapping
@@ -50,6 +46,42 @@ public class GraphQLEndpoint {
 		return this.bookStoreDemo.data().books().searchByTitle(name);
 	}
 
+	@QueryMapping
+	public SearchPage<Book> searchBooks(
+		@Argument String       query,
+		@Argument List<String> fields,
+		@Argument Integer      offset,
+		@Argument String       after,
+		@Argument Integer      pageSize,
+		@Argument Boolean      fuzzy
+	)
+	{
+		final int size = pageSize == null ? 20 : pageSize;
+		final int skip = offset == null ? 0 : offset;
+		// bounded, since the hits of all previous pages are collected
+		if(size < 1 || size > Books.SEARCH_MAX_PAGE_SIZE)
+		{
+			throw new IllegalArgumentException("Page size must be between 1 and " + Books.SEARCH_MAX_PAGE_SIZE);
+		}
+		if(skip < 0 || skip > Books.SEARCH_MAX_OFFSET)
+		{
+			throw new IllegalArgumentException("Offset must be between 0 and " + Books.SEARCH_MAX_OFFSET);
+		}
+
+		final Books books = this.bookStoreDemo.data().books();
+		if(Boolean.TRUE.equals(fuzzy))
+		{
+			return after != null
+				? books.searchBooksFuzzy(query, fields, after, size)
+				: books.searchBooksFuzzy(query, fields, skip, size)
+			;
+		}
+		return after != null
+			? books.searchBooks(query, fields, after, size)
+			: books.searchBooks(query, fields, skip, size)
+		;
+	}
+
 	@QueryMapping
 	public Employee employeeOfTheYear(@Argument int year)
 	{
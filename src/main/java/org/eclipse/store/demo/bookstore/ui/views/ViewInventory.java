@@ -59,7 +59,11 @@ public class ViewInventory extends ViewEntity<InventoryItem>
 
 	@Override
 	public <R> R compute(final SerializableFunction<Stream<InventoryItem>, R> function) {
-		return BookStoreDemo.getInstance().data().shops().computeInventory(function);
+		// the stock index of a book only touches the shops which have it in stock
+		final Book book = this.bookFilter.getValue();
+		return book != null
+			? BookStoreDemo.getInstance().data().shops().computeInventory(book, function)
+			: BookStoreDemo.getInstance().data().shops().computeInventory(function);
 	}
 
 }
@@ -0,0 +1,62 @@
+package org.eclipse.store.demo.bookstore.util;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * String deduplication utilities
+ *
+ */
+public interface InternUtils
+{
+	/**
+	 * Returns the canonical instance of an equal string.
+	 * <p>
+	 * Since EclipseStore persists every instance only once, deduplicated strings of frequently repeated values
+	 * can save heap as well as storage space.
+	 * <p>
+	 * Entities intern their strings in their constructors only, which loading doesn't run.
+	 * So strings of loaded entities are not part of the pool: they are shared among each other
+	 * as far as they were when they were stored, but not with strings of entities created afterwards,
+	 * and duplicates stored by older versions stay duplicates.
+	 *
+	 * @param string the string to deduplicate, may be <code>null</code>
+	 * @return the canonical instance, or <code>null</code> if the given string was <code>null</code>
+	 */
+	public static String intern(final String string)
+	{
+		return string == null
+			? null
+			: Pool.STRINGS.intern(string);
+	}
+
+	/**
+	 * Holder of the pool, since interfaces can't have private fields.
+	 */
+	final class Pool
+	{
+		/**
+		 * Weak pool of deduplicated strings, entries vanish when they are no longer referenced.
+		 */
+		private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+		private Pool()
+		{
+			super();
+		}
+	}
+}
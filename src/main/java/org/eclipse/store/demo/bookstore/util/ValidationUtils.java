@@ -129,6 +129,28 @@ public interface ValidationUtils
         return value;
 	}
 
+	/**
+	 * Checks that the specified value is greater than zero and throws a customized
+	 * {@link IllegalArgumentException} if it isn't.
+     *
+	 * @param value the value to check
+	 * @param messageSupplier supplier of the detail message to be
+	 * used in the event that a exception is thrown
+	 * @return {@code value} if greater than zero
+	 * @throws IllegalArgumentException if {@code value} is zero or less
+	 */
+	public static long requirePositive(
+		final long value,
+		final Supplier<String> messageSupplier
+	)
+	{
+		if(value <= 0)
+		{
+			throw new IllegalArgumentException(messageSupplier.get());
+		}
+        return value;
+	}
+
 	/**
 	 * Checks that the specified value is greater or equal than zero and throws a customized
 	 * {@link IllegalArgumentException} if it isn't.
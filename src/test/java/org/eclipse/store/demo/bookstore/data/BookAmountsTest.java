@@ -0,0 +1,171 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the primitive book amounts of {@link Inventory}.
+ */
+public class BookAmountsTest
+{
+	@Test
+	void ofSortsByKey()
+	{
+		final List<Book>         books   = new ArrayList<>(TestData.books(50));
+		final Map<Book, Integer> amounts = new LinkedHashMap<>();
+		Collections.shuffle(books);
+		books.forEach(book -> amounts.put(book, books.indexOf(book) + 1));
+
+		final BookAmounts bookAmounts = BookAmounts.of(amounts);
+
+		assertThat(bookAmounts.size()).isEqualTo(books.size());
+		for(int i = 1; i < bookAmounts.size(); i++)
+		{
+			assertThat(key(bookAmounts.book(i))).isGreaterThan(key(bookAmounts.book(i - 1)));
+		}
+		books.forEach(book ->
+		{
+			final int index = bookAmounts.indexOf(key(book));
+			assertThat(bookAmounts.book(index)).isSameAs(book);
+			assertThat(bookAmounts.amount(index)).isEqualTo(amounts.get(book));
+		});
+	}
+
+	@Test
+	void insertKeepsOrderAndGrows()
+	{
+		final List<Book>  books       = TestData.books(100);
+		final BookAmounts bookAmounts = new BookAmounts(0);
+		// descending, so every insert goes to the front
+		for(int i = books.size(); i-- > 0;)
+		{
+			final Book book = books.get(i);
+			assertThat(bookAmounts.indexOf(key(book))).isNegative();
+			bookAmounts.insert(book, key(book), i);
+		}
+
+		assertThat(bookAmounts.size()).isEqualTo(books.size());
+		for(int i = 0; i < books.size(); i++)
+		{
+			assertThat(bookAmounts.book(i)).isSameAs(books.get(i));
+			assertThat(bookAmounts.amount(i)).isEqualTo(i);
+			assertThat(bookAmounts.indexOf(key(books.get(i)))).isEqualTo(i);
+		}
+	}
+
+	@Test
+	void compareAndSet()
+	{
+		final Book        book        = TestData.books(1).get(0);
+		final BookAmounts bookAmounts = BookAmounts.of(Map.of(book, 5));
+
+		assertThat(bookAmounts.compareAndSet(0, 4, 1)).isFalse();
+		assertThat(bookAmounts.amount(0)).isEqualTo(5);
+		assertThat(bookAmounts.compareAndSet(0, 5, 1)).isTrue();
+		assertThat(bookAmounts.amount(0)).isEqualTo(1);
+		assertThat(bookAmounts.add(0, 2)).isEqualTo(3);
+	}
+
+	@Test
+	void concurrentAddsAreNotLost() throws Exception
+	{
+		final int                threads    = 8;
+		final int                increments = 10_000;
+		final List<Book>         books      = TestData.books(4);
+		final Map<Book, Integer> amounts    = new HashMap<>();
+		books.forEach(book -> amounts.put(book, 0));
+		final BookAmounts bookAmounts = BookAmounts.of(amounts);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			final List<Future<?>> futures = IntStream.range(0, threads)
+				.mapToObj(t -> executor.submit(() ->
+				{
+					for(int i = 0; i < increments; i++)
+					{
+						final int index = i % bookAmounts.size();
+						if(t % 2 == 0)
+						{
+							bookAmounts.add(index, 1);
+						}
+						else
+						{
+							int amount;
+							do
+							{
+								amount = bookAmounts.amount(index);
+							}
+							while(!bookAmounts.compareAndSet(index, amount, amount + 1));
+						}
+					}
+				}))
+				.collect(toList());
+			for(final Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		for(int i = 0; i < bookAmounts.size(); i++)
+		{
+			assertThat(bookAmounts.amount(i)).isEqualTo(threads * increments / books.size());
+		}
+	}
+
+	@Test
+	void forEachSkipsEmptySlots()
+	{
+		final List<Book>         books   = TestData.books(3);
+		final Map<Book, Integer> amounts = new HashMap<>();
+		amounts.put(books.get(0), 2);
+		amounts.put(books.get(1), 0);
+		amounts.put(books.get(2), 7);
+		final BookAmounts bookAmounts = BookAmounts.of(amounts);
+
+		final Map<Book, Integer> inStock = new HashMap<>();
+		bookAmounts.forEach(inStock::put);
+
+		assertThat(bookAmounts.size()).isEqualTo(3);
+		assertThat(inStock).containsOnly(
+			Map.entry(books.get(0), 2),
+			Map.entry(books.get(2), 7)
+		);
+	}
+
+	private static long key(final Book book)
+	{
+		return Book.isbn13Key(book.isbn13());
+	}
+}
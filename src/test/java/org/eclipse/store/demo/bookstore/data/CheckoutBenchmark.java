@@ -0,0 +1,181 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.eclipse.serializer.persistence.binary.jdk8.types.BinaryHandlersJDK8;
+import org.eclipse.serializer.persistence.types.Storer;
+import org.eclipse.store.storage.embedded.types.EmbeddedStorage;
+import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checkout throughput with stock tracking, compared to adding the purchases without touching the stock.
+ * <p>
+ * Both modes commit one {@link Storer} per purchase to a storage in a temporary directory,
+ * from one thread per processor. The purchases are spread randomly over the shops and books,
+ * the stock is large enough to never run out.
+ * The stock index of {@link Shops} is not part of the measurement, the shops are not added to it.
+ * <p>
+ * It is disabled by default, run it with:
+ * <pre>mvn test -Dtest=CheckoutBenchmark -Dbenchmark=true</pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CheckoutBenchmark
+{
+	private static final int  THREADS        = Runtime.getRuntime().availableProcessors();
+	private static final int  SHOP_COUNT     = 100;
+	private static final int  BOOK_COUNT     = 500;
+	private static final int  INITIAL_STOCK  = 1_000_000;
+	private static final int  MAX_ITEMS      = 3;
+	private static final long WARM_UP_MILLIS = 5_000;
+	private static final long MEASURE_MILLIS = 10_000;
+
+	@TempDir
+	Path storageDirectory;
+
+	@Test
+	void checkoutThroughput() throws Exception
+	{
+		final Data                   data           = new Data();
+		final List<Shop>             shops          = new ArrayList<>(SHOP_COUNT);
+		final List<Object>           root           = new ArrayList<>(List.of(data, shops));
+		final EmbeddedStorageManager storageManager = EmbeddedStorage.Foundation(this.storageDirectory)
+			.onConnectionFoundation(BinaryHandlersJDK8::registerJDK8TypeHandlers)
+			.createEmbeddedStorageManager(root)
+			.start();
+		try
+		{
+			final Address    address  = TestData.address();
+			final Employee   employee = new Employee("Employee", address);
+			final Customer   customer = new Customer(1, "Customer", address);
+			final List<Book> books    = TestData.books(BOOK_COUNT);
+
+			final Map<Book, Integer> stock = books.stream().collect(toMap(identity(), book -> INITIAL_STOCK));
+			for(int i = 0; i < SHOP_COUNT; i++)
+			{
+				final Shop shop = new Shop("Shop " + i, address);
+				shop.inventory().incrementAll(stock, storageManager);
+				shops.add(shop);
+			}
+			storageManager.storeRoot();
+
+			final Purchases purchases = data.purchases();
+			final Consumer<Purchase> add = purchase ->
+			{
+				final Storer storer = storageManager.createStorer();
+				purchases.add(purchase, storer);
+				storer.commit();
+			};
+			final Consumer<Purchase> checkout = purchase -> purchases.checkout(purchase, storageManager);
+
+			run(shops, books, employee, customer, WARM_UP_MILLIS, checkout);
+			report("add", run(shops, books, employee, customer, MEASURE_MILLIS, add));
+			report("checkout", run(shops, books, employee, customer, MEASURE_MILLIS, checkout));
+		}
+		finally
+		{
+			storageManager.shutdown();
+		}
+	}
+
+	/**
+	 * @return the amount of purchases and the measured milliseconds
+	 */
+	private static long[] run(
+		final List<Shop>         shops   ,
+		final List<Book>         books   ,
+		final Employee           employee,
+		final Customer           customer,
+		final long               millis  ,
+		final Consumer<Purchase> action
+	)
+		throws Exception
+	{
+		final LongAdder       count    = new LongAdder();
+		final CountDownLatch  start    = new CountDownLatch(1);
+		final long            duration = TimeUnit.MILLISECONDS.toNanos(millis);
+		final ExecutorService threads  = Executors.newFixedThreadPool(THREADS);
+		try
+		{
+			final List<Future<?>> futures = new ArrayList<>(THREADS);
+			for(int t = 0; t < THREADS; t++)
+			{
+				futures.add(threads.submit(() ->
+				{
+					start.await();
+					final ThreadLocalRandom random = ThreadLocalRandom.current();
+					final long              end    = System.nanoTime() + duration;
+					while(System.nanoTime() < end)
+					{
+						final List<PurchaseItem> items = new ArrayList<>(MAX_ITEMS);
+						for(int i = 0, itemCount = 1 + random.nextInt(MAX_ITEMS); i < itemCount; i++)
+						{
+							items.add(new PurchaseItem(books.get(random.nextInt(books.size())), 1));
+						}
+						action.accept(new Purchase(
+							shops.get(random.nextInt(shops.size())),
+							employee,
+							customer,
+							LocalDateTime.now(),
+							items
+						));
+						count.increment();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for(final Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		finally
+		{
+			threads.shutdownNow();
+		}
+		return new long[] { count.sum(), millis };
+	}
+
+	private static void report(final String name, final long[] result)
+	{
+		System.out.printf(
+			"%s: %d threads, %.0f purchases/s%n",
+			name,
+			THREADS,
+			result[0] * 1000.0 / result[1]
+		);
+	}
+
+}
@@ -0,0 +1,237 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.search.Query;
+import org.eclipse.store.demo.bookstore.data.Index.EntityResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Throughput of concurrent searches on an {@link Index}, with 64 searcher threads.
+ * <p>
+ * Every round is run twice: once with the searches serialized on a shared monitor,
+ * like the read path was before it got lock-free, and once fully concurrent.
+ * Throughput and mean latency of both modes are printed to the console.
+ * <p>
+ * It is disabled by default, run it with:
+ * <pre>mvn test -Dtest=IndexSearchBenchmark -Dbenchmark=true</pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class IndexSearchBenchmark
+{
+	private static final int  SEARCHER_THREADS = 64;
+	private static final int  ENTRY_COUNT      = 100_000;
+	private static final int  WORDS_PER_TITLE  = 5;
+	private static final int  VOCABULARY_SIZE  = 5_000;
+	private static final int  MAX_RESULTS      = 10;
+	private static final long WARM_UP_MILLIS   = 5_000;
+	private static final long MEASURE_MILLIS   = 10_000;
+
+	/**
+	 * Minimal indexed entity, resolved by its position.
+	 */
+	static final class Entry
+	{
+		final long   key  ;
+		final String title;
+
+		Entry(final long key, final String title)
+		{
+			super();
+			this.key   = key;
+			this.title = title;
+		}
+	}
+
+	@Test
+	void concurrentSearches() throws Exception
+	{
+		final String[]     vocabulary = createVocabulary();
+		final List<Entry>  entries    = createEntries(vocabulary);
+		final Index<Entry> index      = createIndex(entries);
+		try
+		{
+			index.rebuild(entries, null);
+
+			final Object monitor = new Object();
+			run(index, vocabulary, WARM_UP_MILLIS, null);
+			report("serialized", run(index, vocabulary, MEASURE_MILLIS, monitor));
+			report("concurrent", run(index, vocabulary, MEASURE_MILLIS, null));
+		}
+		finally
+		{
+			index.close();
+		}
+	}
+
+	private static String[] createVocabulary()
+	{
+		final Random   random     = new Random(42);
+		final String[] vocabulary = new String[VOCABULARY_SIZE];
+		for(int i = 0; i < VOCABULARY_SIZE; i++)
+		{
+			final StringBuilder word = new StringBuilder();
+			for(int c = 0, length = 4 + random.nextInt(6); c < length; c++)
+			{
+				word.append((char)('a' + random.nextInt(26)));
+			}
+			vocabulary[i] = word.toString();
+		}
+		return vocabulary;
+	}
+
+	private static List<Entry> createEntries(final String[] vocabulary)
+	{
+		final Random      random  = new Random(4711);
+		final List<Entry> entries = new ArrayList<>(ENTRY_COUNT);
+		for(int i = 0; i < ENTRY_COUNT; i++)
+		{
+			final StringBuilder title = new StringBuilder();
+			for(int w = 0; w < WORDS_PER_TITLE; w++)
+			{
+				if(w > 0)
+				{
+					title.append(' ');
+				}
+				title.append(vocabulary[random.nextInt(vocabulary.length)]);
+			}
+			entries.add(new Entry(i, title.toString()));
+		}
+		return entries;
+	}
+
+	private static Index<Entry> createIndex(final List<Entry> entries)
+	{
+		final EntityResolver<Entry> entityResolver = new EntityResolver<Entry>()
+		{
+			@Override
+			public long key(final Entry entry)
+			{
+				return entry.key;
+			}
+
+			@Override
+			public List<Entry> resolve(final long[] keys)
+			{
+				final List<Entry> result = new ArrayList<>(keys.length);
+				for(final long key : keys)
+				{
+					result.add(entries.get((int)key));
+				}
+				return result;
+			}
+		};
+
+		return new Index<>(
+			Entry.class,
+			(document, entry) -> document.add(new TextField("title", entry.title, Store.NO)),
+			entityResolver,
+			new IndexConfiguration(1_000, 5_000, 1_000, IndexDirectoryProvider.InMemory())
+		);
+	}
+
+	/**
+	 * @param monitor shared monitor to serialize the searches on, or <code>null</code> to run them concurrently
+	 * @return the amount of searches, their summed up duration in nanoseconds and the measured milliseconds
+	 */
+	private static long[] run(
+		final Index<Entry> index     ,
+		final String[]     vocabulary,
+		final long         millis    ,
+		final Object       monitor
+	)
+		throws Exception
+	{
+		final LongAdder       searches = new LongAdder();
+		final LongAdder       nanos    = new LongAdder();
+		final CountDownLatch  start    = new CountDownLatch(1);
+		final long            duration = TimeUnit.MILLISECONDS.toNanos(millis);
+		final ExecutorService threads  = Executors.newFixedThreadPool(SEARCHER_THREADS);
+		try
+		{
+			final List<Future<?>> futures = new ArrayList<>(SEARCHER_THREADS);
+			for(int t = 0; t < SEARCHER_THREADS; t++)
+			{
+				futures.add(threads.submit(() ->
+				{
+					start.await();
+					final ThreadLocalRandom random = ThreadLocalRandom.current();
+					final long              end    = System.nanoTime() + duration;
+					long                    now;
+					while((now = System.nanoTime()) < end)
+					{
+						final Query query = index.queryBuilder().createBooleanQuery(
+							"title",
+							vocabulary[random.nextInt(vocabulary.length)]
+						);
+						if(monitor != null)
+						{
+							synchronized(monitor)
+							{
+								index.search(query, MAX_RESULTS);
+							}
+						}
+						else
+						{
+							index.search(query, MAX_RESULTS);
+						}
+						nanos.add(System.nanoTime() - now);
+						searches.increment();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for(final Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		finally
+		{
+			threads.shutdownNow();
+		}
+		return new long[] { searches.sum(), nanos.sum(), millis };
+	}
+
+	private static void report(final String name, final long[] result)
+	{
+		final long   searches   = result[0];
+		final double throughput = searches * 1000.0 / result[2];
+		final double meanMicros = searches == 0 ? 0.0 : result[1] / 1000.0 / searches;
+		System.out.printf(
+			"%s: %d threads, %.0f searches/s, mean latency %.1f us%n",
+			name,
+			SEARCHER_THREADS,
+			throughput,
+			meanMicros
+		);
+	}
+
+}
@@ -0,0 +1,354 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.eclipse.store.demo.bookstore.data.Index.EntityResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the consistency markers, rebuilds and paging of {@link Index}, with an index in a temporary directory,
+ * so that it can be reopened.
+ */
+public class IndexTest
+{
+	/**
+	 * Minimal indexed entity, resolved by its key.
+	 */
+	static final class Entry
+	{
+		final long   key  ;
+		final String title;
+
+		Entry(final long key, final String title)
+		{
+			super();
+			this.key   = key;
+			this.title = title;
+		}
+	}
+
+	@TempDir
+	Path indexDirectory;
+
+	private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+	@Test
+	void markersSurviveClose() throws Exception
+	{
+		final Index<Entry> index = this.createIndex(null);
+		this.addAll(index, 10);
+		// not committed explicitly, so it is committed by close
+		final Entry entry = new Entry(11L, "entry number 11");
+		this.entries.put(entry.key, entry);
+		index.add(entry);
+		assertThat(index.isConsistentWith(11, this.checksum())).isTrue();
+		index.close();
+
+		final Index<Entry> reopened = this.createIndex(null);
+		try
+		{
+			assertThat(reopened.isConsistentWith(11, this.checksum())).isTrue();
+			assertThat(reopened.isConsistentWith(10, this.checksum())).isFalse();
+		}
+		finally
+		{
+			reopened.close();
+		}
+	}
+
+	@Test
+	void updateKeepsMarkersConsistent() throws Exception
+	{
+		final Index<Entry> index = this.createIndex(null);
+		try
+		{
+			this.addAll(index, 10);
+			final Entry replaced = this.entries.get(3L);
+			final Entry entry    = new Entry(3L, "entry renamed");
+			this.entries.put(3L, entry);
+			index.update(idTerm(3L), replaced, entry);
+			index.refresh();
+
+			assertThat(index.isConsistentWith(10, this.checksum())).isTrue();
+			assertThat(index.search(new TermQuery(new Term("title", "renamed")), 10)).containsExactly(entry);
+		}
+		finally
+		{
+			index.close();
+		}
+	}
+
+	@Test
+	void removeInvalidatesMarkers() throws Exception
+	{
+		final Index<Entry> index = this.createIndex(null);
+		try
+		{
+			this.addAll(index, 10);
+			this.entries.remove(3L);
+			index.remove(new TermQuery(idTerm(3L)));
+
+			assertThat(index.isConsistentWith(9, this.checksum())).isFalse();
+		}
+		finally
+		{
+			index.close();
+		}
+	}
+
+	@Test
+	void documentsOfOtherLayoutAreDropped() throws Exception
+	{
+		final Index<Entry> index = this.createIndex("1");
+		this.addAll(index, 10);
+		index.close();
+
+		final Index<Entry> sameLayout = this.createIndex("1");
+		try
+		{
+			assertThat(sameLayout.size()).isEqualTo(10);
+		}
+		finally
+		{
+			sameLayout.close();
+		}
+
+		final Index<Entry> otherLayout = this.createIndex("2");
+		try
+		{
+			assertThat(otherLayout.size()).isZero();
+			assertThat(otherLayout.isConsistentWith(0, 0L)).isTrue();
+		}
+		finally
+		{
+			otherLayout.close();
+		}
+	}
+
+	@Test
+	void cursorPagingVisitsEveryHitOnce() throws Exception
+	{
+		final Index<Entry> index = this.createIndex(null);
+		try
+		{
+			this.addAll(index, 25);
+			final TermQuery query = new TermQuery(new Term("title", "entry"));
+
+			final List<Entry> paged       = new ArrayList<>();
+			final List<Entry> offsetPaged = new ArrayList<>();
+			String            cursor      = null;
+			int               pages       = 0;
+			do
+			{
+				final SearchPage<Entry> page = index.search(query, cursor, 10);
+				assertThat(page.totalHits()).isEqualTo(25L);
+				offsetPaged.addAll(index.search(query, paged.size(), 10).results());
+				paged.addAll(page.results());
+				cursor = page.nextCursor();
+				pages++;
+			}
+			while(cursor != null);
+
+			assertThat(pages).isEqualTo(3);
+			assertThat(paged).hasSize(25).doesNotHaveDuplicates();
+			assertThat(paged).containsExactlyElementsOf(offsetPaged);
+		}
+		finally
+		{
+			index.close();
+		}
+	}
+
+	@Test
+	void offsetsBeyondTheIndexYieldEmptyPages() throws Exception
+	{
+		final Index<Entry> index = this.createIndex(null);
+		try
+		{
+			this.addAll(index, 25);
+			final TermQuery query = new TermQuery(new Term("title", "entry"));
+
+			for(final int offset : new int[] {25, 2_000_000_000, Integer.MAX_VALUE})
+			{
+				final SearchPage<Entry> page = index.search(query, offset, Integer.MAX_VALUE);
+				assertThat(page.results()).isEmpty();
+				assertThat(page.totalHits()).isEqualTo(25L);
+				assertThat(page.nextCursor()).isNull();
+			}
+			assertThat(index.search(query, 20, Integer.MAX_VALUE).results()).hasSize(5);
+		}
+		finally
+		{
+			index.close();
+		}
+	}
+
+	@Test
+	void rebuildIsNotSearchableBeforeItsCommit() throws Exception
+	{
+		final Index<Entry> index = this.createIndex(null);
+		try
+		{
+			this.addAll(index, 10);
+			final List<Entry> rebuilt = this.entries(11, 3_000);
+
+			final List<Integer> visibleSizes = Collections.synchronizedList(new ArrayList<>());
+			index.rebuild(rebuilt, (done, total) ->
+			{
+				index.refresh();
+				visibleSizes.add(index.size());
+			});
+
+			assertThat(visibleSizes).isNotEmpty().containsOnly(10);
+			assertThat(index.size()).isEqualTo(3_000);
+		}
+		finally
+		{
+			index.close();
+		}
+	}
+
+	@Test
+	void cancelledRebuildKeepsTheIndexWritable() throws Exception
+	{
+		final Index<Entry> index = this.createIndex(null, 1);
+		try
+		{
+			final List<Entry>   rebuilt     = this.entries(1, 50_000);
+			final Thread        caller      = Thread.currentThread();
+			final AtomicBoolean interrupted = new AtomicBoolean();
+
+			assertThatThrownBy(() -> index.rebuild(rebuilt, (done, total) ->
+			{
+				if(interrupted.compareAndSet(false, true))
+				{
+					caller.interrupt();
+				}
+			}))
+				.isInstanceOf(InterruptedException.class);
+			Thread.interrupted();
+			assertThat(index.isConsistentWith(rebuilt.size(), this.checksum())).isFalse();
+
+			// the writer was not hit by the interruption
+			index.rebuild(rebuilt, (done, total) -> {});
+			assertThat(index.size()).isEqualTo(rebuilt.size());
+			assertThat(index.isConsistentWith(rebuilt.size(), this.checksum())).isTrue();
+		}
+		finally
+		{
+			index.close();
+		}
+	}
+
+	private List<Entry> entries(final long fromKey, final int count)
+	{
+		final List<Entry> created = new ArrayList<>(count);
+		for(long key = fromKey; key < fromKey + count; key++)
+		{
+			final Entry entry = new Entry(key, "entry number " + key);
+			this.entries.put(key, entry);
+			created.add(entry);
+		}
+		return created;
+	}
+
+	private void addAll(final Index<Entry> index, final int count)
+	{
+		index.addAll(this.entries(1, count));
+		index.commit();
+		index.refresh();
+	}
+
+	private long checksum()
+	{
+		return this.entries.keySet().stream()
+			.mapToLong(Index::fingerprint)
+			.sum();
+	}
+
+	private static Term idTerm(final long key)
+	{
+		return new Term("id", Long.toString(key));
+	}
+
+	private Index<Entry> createIndex(final String documentVersion)
+	{
+		return this.createIndex(documentVersion, Runtime.getRuntime().availableProcessors());
+	}
+
+	private Index<Entry> createIndex(final String documentVersion, final int rebuildThreads)
+	{
+		final EntityResolver<Entry> entityResolver = new EntityResolver<Entry>()
+		{
+			@Override
+			public long key(final Entry entry)
+			{
+				return entry.key;
+			}
+
+			@Override
+			public List<Entry> resolve(final long[] keys)
+			{
+				final List<Entry> result = new ArrayList<>(keys.length);
+				for(final long key : keys)
+				{
+					final Entry entry = IndexTest.this.entries.get(key);
+					if(entry != null)
+					{
+						result.add(entry);
+					}
+				}
+				return result;
+			}
+		};
+
+		return new Index<>(
+			Entry.class,
+			(document, entry) ->
+			{
+				document.add(new StringField("id", Long.toString(entry.key), Store.NO));
+				document.add(new TextField("title", entry.title, Store.NO));
+			},
+			entityResolver,
+			new IndexConfiguration(
+				1_000,
+				60_000,
+				1_000,
+				IndexDirectoryProvider.MMap(this.indexDirectory),
+				rebuildThreads,
+				16,
+				false
+			),
+			documentVersion
+		);
+	}
+}
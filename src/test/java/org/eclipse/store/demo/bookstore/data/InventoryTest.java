@@ -0,0 +1,199 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.serializer.persistence.binary.jdk8.types.BinaryHandlersJDK8;
+import org.eclipse.store.storage.embedded.types.EmbeddedStorage;
+import org.eclipse.store.storage.embedded.types.EmbeddedStorageManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the stock operations of {@link Inventory}, which are stored in a storage in a temporary directory.
+ */
+public class InventoryTest
+{
+	@TempDir
+	Path storageDirectory;
+
+	private EmbeddedStorageManager storageManager;
+	private List<Book>             books         ;
+	private Inventory              inventory     ;
+	private List<Book>             notifiedBooks ;
+
+	@BeforeEach
+	void setUp()
+	{
+		this.storageManager = this.startStorage();
+		this.books         = TestData.books(3);
+		this.inventory     = new Inventory();
+		this.notifiedBooks = new ArrayList<>();
+		this.inventory.incrementAll(
+			Map.of(this.books.get(0), 5, this.books.get(1), 1),
+			this.storageManager
+		);
+		this.inventory.bind((books, persister) -> this.notifiedBooks.addAll(books));
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		this.storageManager.shutdown();
+	}
+
+	private EmbeddedStorageManager startStorage()
+	{
+		return EmbeddedStorage.Foundation(this.storageDirectory)
+			.onConnectionFoundation(BinaryHandlersJDK8::registerJDK8TypeHandlers)
+			.createEmbeddedStorageManager()
+			.start();
+	}
+
+	@Test
+	void decrementAll()
+	{
+		this.inventory.decrementAll(
+			Map.of(this.books.get(0), 2, this.books.get(1), 1),
+			this.storageManager
+		);
+
+		assertThat(this.inventory.amount(this.books.get(0))).isEqualTo(3);
+		assertThat(this.inventory.amount(this.books.get(1))).isZero();
+		assertThat(this.notifiedBooks).containsExactlyInAnyOrder(this.books.get(0), this.books.get(1));
+	}
+
+	@Test
+	void decrementAllRollsBackWhenStockIsInsufficient()
+	{
+		// ordered, so the first book is decremented before the second one fails
+		final Map<Book, Integer> amounts = new LinkedHashMap<>();
+		amounts.put(this.books.get(0), 2);
+		amounts.put(this.books.get(1), 3);
+
+		assertThatIllegalStateException().isThrownBy(() ->
+			this.inventory.decrementAll(amounts, this.storageManager)
+		);
+		assertThat(this.inventory.amount(this.books.get(0))).isEqualTo(5);
+		assertThat(this.inventory.amount(this.books.get(1))).isEqualTo(1);
+		assertThat(this.notifiedBooks).isEmpty();
+	}
+
+	@Test
+	void decrementAllRollsBackWhenBookIsNotStocked()
+	{
+		final Map<Book, Integer> amounts = new LinkedHashMap<>();
+		amounts.put(this.books.get(0), 2);
+		amounts.put(this.books.get(1), 1);
+		amounts.put(this.books.get(2), 1);
+
+		assertThatIllegalStateException().isThrownBy(() ->
+			this.inventory.decrementAll(amounts, this.storageManager)
+		);
+		assertThat(this.inventory.amount(this.books.get(0))).isEqualTo(5);
+		assertThat(this.inventory.amount(this.books.get(1))).isEqualTo(1);
+		assertThat(this.inventory.amount(this.books.get(2))).isZero();
+		assertThat(this.notifiedBooks).isEmpty();
+	}
+
+	@Test
+	void failingDecrementAllIsInvisibleToConcurrentOperations() throws Exception
+	{
+		final int  checkouts = 200;
+		final Book book      = this.books.get(0);
+		this.inventory.increment(book, checkouts, this.storageManager);
+		this.storageManager.setRoot(this.inventory);
+		this.storageManager.storeRoot();
+
+		// always fails, since the second book is not stocked
+		final Map<Book, Integer> failing = new LinkedHashMap<>();
+		failing.put(book, 1);
+		failing.put(this.books.get(2), 1);
+
+		final AtomicBoolean   done     = new AtomicBoolean();
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			final Future<Integer> failures = executor.submit(() ->
+			{
+				int count = 0;
+				do
+				{
+					try
+					{
+						this.inventory.decrementAll(failing, this.storageManager);
+					}
+					catch(final IllegalStateException e)
+					{
+						count++;
+					}
+				}
+				while(!done.get());
+				return count;
+			});
+			final Future<Integer> increases = executor.submit(() ->
+			{
+				int count = 0;
+				int last  = this.inventory.amount(book);
+				do
+				{
+					final int amount = this.inventory.amount(book);
+					if(amount > last)
+					{
+						count++;
+					}
+					last = amount;
+				}
+				while(!done.get());
+				return count;
+			});
+
+			for(int i = 0; i < checkouts; i++)
+			{
+				this.inventory.decrementAll(Map.of(book, 1), this.storageManager);
+			}
+			done.set(true);
+
+			assertThat(failures.get()).isPositive();
+			assertThat(increases.get()).isZero();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		assertThat(this.inventory.amount(book)).isEqualTo(5);
+
+		this.storageManager.shutdown();
+		this.storageManager = this.startStorage();
+		final Inventory stored = (Inventory)this.storageManager.root();
+		assertThat(stored.amount(book)).isEqualTo(5);
+		assertThat(stored.amount(this.books.get(1))).isEqualTo(1);
+		assertThat(stored.amount(this.books.get(2))).isZero();
+	}
+}
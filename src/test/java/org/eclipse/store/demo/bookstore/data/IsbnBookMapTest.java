@@ -0,0 +1,123 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the open addressing ISBN map of {@link Books}.
+ */
+public class IsbnBookMapTest
+{
+	@Test
+	void putAndGet()
+	{
+		final IsbnBookMap map   = new IsbnBookMap();
+		final List<Book>  books = TestData.books(3);
+		books.forEach(book -> assertThat(map.put(key(book), book)).isNull());
+
+		assertThat(map.size()).isEqualTo(3);
+		books.forEach(book -> assertThat(map.get(key(book))).isSameAs(book));
+		assertThat(map.get(Book.isbn13Key(TestData.isbn13(3)))).isNull();
+	}
+
+	@Test
+	void putReplacesBookOfSameKey()
+	{
+		final IsbnBookMap map      = new IsbnBookMap();
+		final Book        book     = TestData.books(1).get(0);
+		final Book        replaced = TestData.books(1).get(0);
+		map.put(key(replaced), replaced);
+
+		assertThat(map.put(key(book), book)).isSameAs(replaced);
+		assertThat(map.size()).isEqualTo(1);
+		assertThat(map.get(key(book))).isSameAs(book);
+	}
+
+	@Test
+	void growsBeyondInitialCapacity()
+	{
+		final IsbnBookMap map   = new IsbnBookMap(4);
+		final List<Book>  books = TestData.books(10_000);
+		books.forEach(book -> map.put(key(book), book));
+
+		assertThat(map.size()).isEqualTo(books.size());
+		books.forEach(book -> assertThat(map.get(key(book))).isSameAs(book));
+		assertThat(map.stream()).containsExactlyInAnyOrderElementsOf(books);
+	}
+
+	@Test
+	void rejectsEmptyKey()
+	{
+		final IsbnBookMap map = new IsbnBookMap();
+
+		assertThatIllegalArgumentException().isThrownBy(() -> map.put(0L, TestData.books(1).get(0)));
+		assertThat(map.get(0L)).isNull();
+	}
+
+	@Test
+	void keyChecksumIsOrderIndependent()
+	{
+		final List<Book>  books    = new ArrayList<>(TestData.books(100));
+		final IsbnBookMap map      = new IsbnBookMap();
+		final IsbnBookMap shuffled = new IsbnBookMap();
+		books.forEach(book -> map.put(key(book), book));
+		Collections.shuffle(books);
+		books.forEach(book -> shuffled.put(key(book), book));
+
+		assertThat(shuffled.keyChecksum(Index::fingerprint)).isEqualTo(map.keyChecksum(Index::fingerprint));
+		assertThat(map.keyChecksum(Index::fingerprint)).isEqualTo(
+			books.stream().mapToLong(book -> Index.fingerprint(key(book))).sum()
+		);
+	}
+
+	@Test
+	void isbnNotationsShareKey()
+	{
+		final String isbn       = TestData.isbn13(42);
+		final String hyphenated = isbn.substring(0, 3) + '-' + isbn.substring(3, 12) + '-' + isbn.substring(12);
+
+		assertThat(Book.isbn13Key(hyphenated)).isEqualTo(Book.isbn13Key(isbn));
+		assertThat(Book.isbn13Key("ISBN-13: " + isbn)).isEqualTo(Book.isbn13Key(isbn));
+		assertThat(Book.isbn13Key(isbn)).isEqualTo(Long.parseLong(isbn));
+	}
+
+	@Test
+	void invalidIsbnsHaveNoKey()
+	{
+		final String isbn          = TestData.isbn13(42);
+		final char   checkDigit    = isbn.charAt(12);
+		final String wrongChecksum = isbn.substring(0, 12) + (char)((checkDigit - '0' + 1) % 10 + '0');
+
+		assertThat(Book.parseIsbn13(wrongChecksum)).isEqualTo(-1L);
+		assertThat(Book.parseIsbn13("977" + isbn.substring(3))).isEqualTo(-1L);
+		assertThat(Book.parseIsbn13(isbn.substring(1))).isEqualTo(-1L);
+		assertThat(Book.parseIsbn13(null)).isEqualTo(-1L);
+		assertThatThrownBy(() -> Book.isbn13Key(wrongChecksum)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static long key(final Book book)
+	{
+		return Book.isbn13Key(book.isbn13());
+	}
+}
@@ -0,0 +1,91 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.eclipse.store.demo.bookstore.data.Suggestion.Type;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the autocomplete index of {@link Books}.
+ */
+public class PrefixSuggesterTest
+{
+	@Test
+	void suggestionsAreRankedByWeight()
+	{
+		final PrefixSuggester suggester = new PrefixSuggester();
+		suggester.add("Moby Dick", Type.TITLE, 2);
+		suggester.add("Modern Times", Type.TITLE, 5);
+		suggester.add("Mort", Type.TITLE, 1);
+		suggester.add("Dune", Type.TITLE, 9);
+
+		assertThat(texts(suggester.suggest("mo", 10))).containsExactly("Modern Times", "Moby Dick", "Mort");
+		assertThat(texts(suggester.suggest("mo", 2))).containsExactly("Modern Times", "Moby Dick");
+	}
+
+	@Test
+	void everyWordIsMatchedIgnoringCaseAndPunctuation()
+	{
+		final PrefixSuggester suggester = new PrefixSuggester();
+		suggester.add("The Lord of the Rings: Return", Type.TITLE, 1);
+
+		assertThat(texts(suggester.suggest("LORD", 10))).containsExactly("The Lord of the Rings: Return");
+		assertThat(texts(suggester.suggest("rings ret", 10))).containsExactly("The Lord of the Rings: Return");
+		assertThat(suggester.suggest("ord", 10)).isEmpty();
+		assertThat(suggester.suggest("  ", 10)).isEmpty();
+	}
+
+	@Test
+	void prefixesLongerThanTrieAreFiltered()
+	{
+		final PrefixSuggester suggester = new PrefixSuggester();
+		suggester.add("Encyclopaedia Britannica", Type.TITLE, 1);
+		suggester.add("Encyclopaedia Galactica", Type.TITLE, 2);
+
+		assertThat(texts(suggester.suggest("encyclopaedia b", 10))).containsExactly("Encyclopaedia Britannica");
+		assertThat(texts(suggester.suggest("encyclopaedia", 10)))
+			.containsExactly("Encyclopaedia Galactica", "Encyclopaedia Britannica");
+	}
+
+	@Test
+	void weightsOfSameSuggestionAreAdded()
+	{
+		final PrefixSuggester suggester = new PrefixSuggester();
+		suggester.add("Alpha", Type.AUTHOR, 1);
+		suggester.add("Alpine", Type.AUTHOR, 2);
+		suggester.add("Alpha", Type.AUTHOR, 2);
+		suggester.add("Alpha", Type.PUBLISHER, 1);
+
+		final List<Suggestion> suggestions = suggester.suggest("alp", 10);
+		assertThat(suggestions).hasSize(3);
+		assertThat(suggestions.get(0).text()).isEqualTo("Alpha");
+		assertThat(suggestions.get(0).type()).isEqualTo(Type.AUTHOR);
+		assertThat(suggestions.get(0).weight()).isEqualTo(3);
+		assertThat(suggestions.get(1).text()).isEqualTo("Alpine");
+		assertThat(suggestions.get(2).type()).isEqualTo(Type.PUBLISHER);
+	}
+
+	private static List<String> texts(final List<Suggestion> suggestions)
+	{
+		return suggestions.stream()
+			.map(Suggestion::text)
+			.collect(toList());
+	}
+}
@@ -0,0 +1,106 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the search result cache of {@link Books}, with numbers as entities which are their own keys.
+ */
+public class SearchResultCacheTest
+{
+	@Test
+	void cachedResultIsResolvedFromKeys()
+	{
+		final SearchResultCache<Long> cache = newCache(10, 10);
+		cache.put("query", 1L, page(1L, 2L, 3L));
+
+		final SearchPage<Long> cached = cache.get("query", 1L, key -> key * 10);
+
+		assertThat(cached.results()).containsExactly(10L, 20L, 30L);
+		assertThat(cached.totalHits()).isEqualTo(3L);
+		assertThat(cache.metrics().hitCount()).isEqualTo(1L);
+	}
+
+	@Test
+	void resultOfOtherGenerationIsMiss()
+	{
+		final SearchResultCache<Long> cache = newCache(10, 10);
+		cache.put("query", 1L, page(1L));
+
+		assertThat(cache.get("query", 2L, Long::valueOf)).isNull();
+		assertThat(cache.get("other", 1L, Long::valueOf)).isNull();
+		assertThat(cache.metrics().missCount()).isEqualTo(2L);
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted()
+	{
+		final SearchResultCache<Long> cache = newCache(2, 10);
+		cache.put("a", 1L, page(1L));
+		cache.put("b", 1L, page(2L));
+		// touch a, so b is the eldest one
+		cache.get("a", 1L, Long::valueOf);
+		cache.put("c", 1L, page(3L));
+
+		assertThat(cache.get("a", 1L, Long::valueOf)).isNotNull();
+		assertThat(cache.get("b", 1L, Long::valueOf)).isNull();
+		assertThat(cache.get("c", 1L, Long::valueOf)).isNotNull();
+		assertThat(cache.metrics().entryCount()).isEqualTo(2);
+	}
+
+	@Test
+	void largeResultIsNotCached()
+	{
+		final SearchResultCache<Long> cache = newCache(10, 3);
+		cache.put("small", 1L, page(1L, 2L, 3L));
+		cache.put("large", 1L, page(1L, 2L, 3L, 4L));
+
+		assertThat(cache.get("small", 1L, Long::valueOf)).isNotNull();
+		assertThat(cache.get("large", 1L, Long::valueOf)).isNull();
+		assertThat(cache.metrics().entryCount()).isEqualTo(1);
+	}
+
+	@Test
+	void clearKeepsStatistics()
+	{
+		final SearchResultCache<Long> cache = newCache(10, 10);
+		cache.put("query", 1L, page(1L));
+		cache.get("query", 1L, Long::valueOf);
+		cache.clear();
+
+		assertThat(cache.get("query", 1L, Long::valueOf)).isNull();
+		assertThat(cache.metrics().hitCount()).isEqualTo(1L);
+		assertThat(cache.metrics().missCount()).isEqualTo(1L);
+		assertThat(cache.metrics().entryCount()).isZero();
+	}
+
+	private static SearchResultCache<Long> newCache(final int maxEntries, final int maxResults)
+	{
+		return new SearchResultCache<>(maxEntries, maxResults, Long::longValue);
+	}
+
+	private static SearchPage<Long> page(final long... keys)
+	{
+		final List<Long> results = LongStream.of(keys).boxed().collect(toList());
+		return new SearchPage<>(results.size(), results, null);
+	}
+}
@@ -0,0 +1,97 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the primitive shop amounts of the stock index of {@link Shops}.
+ */
+public class ShopAmountsTest
+{
+	@Test
+	void putKeepsPositionsSorted()
+	{
+		final List<Integer> positions = new ArrayList<>();
+		IntStream.range(0, 100).forEach(positions::add);
+		Collections.shuffle(positions);
+		final ShopAmounts  shopAmounts = new ShopAmounts();
+		final List<Object> changed     = new ArrayList<>();
+		positions.forEach(position -> assertThat(shopAmounts.put(position, position + 1, changed)).isZero());
+
+		assertThat(shopAmounts.size()).isEqualTo(positions.size());
+		for(int i = 0; i < shopAmounts.size(); i++)
+		{
+			assertThat(shopAmounts.position(i)).isEqualTo(i);
+			assertThat(shopAmounts.amount(i)).isEqualTo(i + 1);
+		}
+	}
+
+	@Test
+	void putReturnsPreviousAmount()
+	{
+		final ShopAmounts  shopAmounts = new ShopAmounts();
+		final List<Object> changed     = new ArrayList<>();
+		shopAmounts.put(3, 5, changed);
+
+		assertThat(shopAmounts.put(3, 8, changed)).isEqualTo(5);
+		assertThat(shopAmounts.size()).isEqualTo(1);
+		assertThat(shopAmounts.amount(0)).isEqualTo(8);
+	}
+
+	@Test
+	void zeroAmountRemovesShop()
+	{
+		final ShopAmounts  shopAmounts = new ShopAmounts();
+		final List<Object> changed     = new ArrayList<>();
+		shopAmounts.put(1, 1, changed);
+		shopAmounts.put(2, 2, changed);
+		shopAmounts.put(3, 3, changed);
+
+		assertThat(shopAmounts.put(2, 0, changed)).isEqualTo(2);
+		assertThat(shopAmounts.size()).isEqualTo(2);
+		assertThat(shopAmounts.position(0)).isEqualTo(1);
+		assertThat(shopAmounts.position(1)).isEqualTo(3);
+		assertThat(shopAmounts.amount(1)).isEqualTo(3);
+
+		// absent shops stay absent
+		assertThat(shopAmounts.put(7, 0, changed)).isZero();
+		assertThat(shopAmounts.size()).isEqualTo(2);
+	}
+
+	@Test
+	void collectsChangedObjects()
+	{
+		final ShopAmounts  shopAmounts = new ShopAmounts();
+		final List<Object> inserted    = new ArrayList<>();
+		shopAmounts.put(1, 1, inserted);
+
+		// the arrays are persisted as they are, so inserts change the map and both arrays
+		assertThat(inserted).hasSize(3).contains(shopAmounts);
+
+		final List<Object> updated = new ArrayList<>();
+		shopAmounts.put(1, 2, updated);
+
+		// updates only change the amounts in place
+		assertThat(updated).hasSize(1).doesNotContain(shopAmounts);
+	}
+}
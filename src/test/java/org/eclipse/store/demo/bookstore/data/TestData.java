@@ -0,0 +1,80 @@
+package org.eclipse.store.demo.bookstore.data;
+
+/*-
+ * #%L
+ * EclipseStore BookStore Demo
+ * %%
+ * Copyright (C) 2023 MicroStream Software
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+import static org.eclipse.store.demo.bookstore.BookStoreDemo.money;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal entities for tests and benchmarks.
+ */
+final class TestData
+{
+	static Address address()
+	{
+		final Country country = new Country("Country", "CY");
+		final City    city    = new City("City", new State("State", country));
+		return new Address("Street 1", "", "12345", city);
+	}
+
+	/**
+	 * Creates books with valid and distinct ISBNs, see {@link #isbn13(int)}.
+	 */
+	static List<Book> books(final int count)
+	{
+		final Address    address   = address();
+		final Author     author    = new Author("Author", address);
+		final Genre      genre     = new Genre("Genre");
+		final Publisher  publisher = new Publisher("Publisher", address);
+		final Language   language  = new Language(Locale.ENGLISH);
+		final List<Book> books     = new ArrayList<>(count);
+		for(int i = 0; i < count; i++)
+		{
+			books.add(new Book(
+				isbn13(i),
+				"Book " + i,
+				author,
+				genre,
+				publisher,
+				language,
+				money(10.0),
+				money(20.0)
+			));
+		}
+		return books;
+	}
+
+	/**
+	 * Creates a valid ISBN-13 with the 978 prefix for a sequence number.
+	 */
+	static String isbn13(final int number)
+	{
+		final String digits = "978" + String.format("%09d", number);
+		int          sum    = 0;
+		for(int i = 0; i < digits.length(); i++)
+		{
+			sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+		}
+		return digits + (10 - sum % 10) % 10;
+	}
+
+	private TestData()
+	{
+		super();
+	}
+}